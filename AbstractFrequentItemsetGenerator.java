@@ -0,0 +1,221 @@
+package apriori;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Holds the parts shared by all {@link FrequentItemsetGenerator} engines. The
+ * input is encoded into a {@link TransactionDatabase} here, and the engines
+ * mine the encoded form only.
+ *
+ * @param <I> the actual item type.
+ */
+abstract class AbstractFrequentItemsetGenerator<I> 
+        implements FrequentItemsetGenerator<I> {
+
+    private boolean retainInfrequentSupports;
+    private ItemsetMode itemsetMode = ItemsetMode.ALL;
+    private int maximumItemsetLength = Integer.MAX_VALUE;
+    private boolean collapseDuplicates = true;
+
+    /**
+     * Sets whether the support counts of the itemsets that were counted, but
+     * turned out not to be frequent, are kept in the result along with those 
+     * of the frequent itemsets. Disabled by default, as the infrequent 
+     * candidates may outnumber the frequent itemsets by far.
+     */
+    public void setRetainInfrequentSupports(boolean retainInfrequentSupports) {
+        this.retainInfrequentSupports = retainInfrequentSupports;
+    }
+
+    public boolean isRetainInfrequentSupports() {
+        return retainInfrequentSupports;
+    }
+
+    /**
+     * Sets which frequent itemsets are returned. The default is all of them.
+     * The closed and maximal itemsets are picked out of all frequent 
+     * itemsets once the search is done, so the search itself costs the same
+     * in every mode. An itemset is decided by its supersets one item larger,
+     * so the closed and maximal modes cannot be combined with a maximum
+     * itemset length. In an incomplete result, the itemsets whose supersets
+     * were not all searched are left out of the list.
+     */
+    public void setItemsetMode(ItemsetMode itemsetMode) {
+        this.itemsetMode = Objects.requireNonNull(itemsetMode,
+                                                  "The itemset mode is null.");
+    }
+
+    public ItemsetMode getItemsetMode() {
+        return itemsetMode;
+    }
+
+    /**
+     * Sets the size of the largest itemsets to mine. The search does not 
+     * extend itemsets of this size, so it saves the work on all larger ones.
+     * Only the {@link ItemsetMode#ALL} mode supports a maximum length.
+     * Unlimited by default.
+     */
+    public void setMaximumItemsetLength(int maximumItemsetLength) {
+        if (maximumItemsetLength < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum itemset length is too small: " + 
+                    maximumItemsetLength + ", should be at least 1");
+        }
+
+        this.maximumItemsetLength = maximumItemsetLength;
+    }
+
+    public int getMaximumItemsetLength() {
+        return maximumItemsetLength;
+    }
+
+    /**
+     * Sets whether identical transactions are collapsed into one weighted 
+     * transaction before mining, so that each distinct transaction is 
+     * scanned and counted once. The result is the same either way. Enabled
+     * by default.
+     */
+    public void setCollapseDuplicates(boolean collapseDuplicates) {
+        this.collapseDuplicates = collapseDuplicates;
+    }
+
+    public boolean isCollapseDuplicates() {
+        return collapseDuplicates;
+    }
+
+    @Override
+    public FrequentItemsetData<I> generate(List<Set<I>> transactionList, 
+                                           double minimumSupport) {
+        Objects.requireNonNull(transactionList, "The itemset list is empty.");
+        checkSupport(minimumSupport);
+        checkItemsetMode();
+
+        if (transactionList.isEmpty()) {
+            return null;
+        }
+
+        return generate(prepare(TransactionDatabase.encode(transactionList)),
+                        minimumSupport);
+    }
+
+    @Override
+    public FrequentItemsetData<I> generate(TransactionSource<I> source,
+                                           double minimumSupport) 
+            throws IOException {
+        Objects.requireNonNull(source, "The transaction source is null.");
+        checkSupport(minimumSupport);
+        checkItemsetMode();
+
+        TransactionDatabase<I> database = TransactionDatabase.encode(source);
+
+        if (database.getTransactionNumber() == 0) {
+            return null;
+        }
+
+        return generate(prepare(database), minimumSupport);
+    }
+
+    private TransactionDatabase<I> prepare(TransactionDatabase<I> database) {
+        return collapseDuplicates ? database.collapseDuplicates() : database;
+    }
+
+    private void checkItemsetMode() {
+        if (itemsetMode != ItemsetMode.ALL
+                && maximumItemsetLength != Integer.MAX_VALUE) {
+            throw new IllegalStateException(
+                    "The " + itemsetMode + " mode cannot be combined with " +
+                    "a maximum itemset length, which hides the supersets " +
+                    "that decide it.");
+        }
+    }
+
+    /**
+     * Mines the input database, which holds at least one transaction. Its
+     * transactions may be weighted.
+     */
+    abstract FrequentItemsetData<I> generate(TransactionDatabase<I> database,
+                                             double minimumSupport);
+
+    /**
+     * Creates the collector an engine reports its itemsets to.
+     */
+    FrequentItemsetCollector<I> newCollector(TransactionDatabase<I> database) {
+        FrequentItemsetCollector<I> collector = 
+                new FrequentItemsetCollector<>(database.getDictionary(),
+                                               retainInfrequentSupports,
+                                               itemsetMode);
+        collector.setMaximumItemsetLength(maximumItemsetLength);
+        return collector;
+    }
+
+    /**
+     * Returns the number of frequent items of the input database, and
+     * records the support counts of the other items in the collector. The
+     * item ids are sorted by descending support, so the frequent items are
+     * exactly the ids below the returned number.
+     */
+    int countFrequentItems(TransactionDatabase<I> database,
+                           FrequentItemsetCollector<I> collector,
+                           double minimumSupport) {
+        int transactions = database.getTransactionNumber();
+        int frequentItems = 0;
+
+        for (int item = 0; item < database.getItemNumber(); ++item) {
+            int supportCount = database.getItemSupportCount(item);
+
+            if (isFrequent(supportCount, transactions, minimumSupport)) {
+                frequentItems = item + 1;
+            } else {
+                collector.addSupportCount(new int[]{ item }, supportCount);
+            }
+        }
+
+        return frequentItems;
+    }
+
+    /**
+     * Returns the number of frequent items of the input encoded transaction.
+     * Its ids are sorted, so those items are a prefix of it.
+     *
+     * @param frequentItems the number of frequent items of the database.
+     */
+    static int frequentPrefixLength(int[] transaction, int frequentItems) {
+        int index = Arrays.binarySearch(transaction, frequentItems);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Tells whether an itemset with the given support count is frequent. All
+     * engines decide through this method, so that they agree on the itemsets
+     * lying exactly at the threshold. An itemset that occurs in no transaction
+     * is never frequent, not even at zero minimum support.
+     */
+    static boolean isFrequent(int supportCount, 
+                              int transactions, 
+                              double minimumSupport) {
+        return supportCount > 0 
+                && 1.0 * supportCount / transactions >= minimumSupport;
+    }
+
+    static void checkSupport(double support) {
+        if (Double.isNaN(support)) {
+            throw new IllegalArgumentException("The input support is NaN.");
+        }
+
+        if (support > 1.0) {
+            throw new IllegalArgumentException(
+                    "The input support is too large: " + support + ", " +
+                    "should be at most 1.0");
+        }
+
+        if (support < 0.0) {
+            throw new IllegalArgumentException(
+                    "The input support is too small: " + support + ", " +
+                    "should be at least 0.0");
+        }
+    }
+}
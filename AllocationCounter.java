@@ -0,0 +1,42 @@
+package apriori;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the number of bytes the calling thread has allocated, from the
+ * counters that HotSpot and compatible JVMs keep per thread.
+ */
+final class AllocationCounter {
+
+    private AllocationCounter() {}
+
+    /**
+     * Returns the bytes allocated by the calling thread so far, or -1 if the
+     * JVM does not count them.
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean =
+                    (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the bytes allocated since the input reading of
+     * {@link #allocatedBytes()}, or -1 if the JVM does not count them.
+     */
+    static long allocatedSince(long allocatedBytes) {
+        return allocatedBytes < 0 ? -1 : allocatedBytes() - allocatedBytes;
+    }
+}
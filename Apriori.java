@@ -9,27 +9,31 @@ package apriori;
  *
  * @author Pranava
  */
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Scanner;
 import java.util.Set;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class AssociationRule<I> {
 
@@ -93,26 +97,63 @@ class AssociationRule<I> {
 class FrequentItemsetData<I> {
 
     private final List<Set<I>> frequentItemsetList;
-    private final Map<Set<I>, Integer> supportCountMap;
+    private final ItemsetSupportStore<I> supportStore;
     private final double minimumSupport;
     private final int numberOfTransactions;
+    private final boolean complete;
+    private final ItemsetMode itemsetMode;
 
     FrequentItemsetData(List<Set<I>> frequentItemsetList,
                         Map<Set<I>, Integer> supportCountMap,
                         double minimumSupport,
                         int transactionNumber) {
+        this(frequentItemsetList,
+             ItemsetSupportStore.of(supportCountMap),
+             minimumSupport,
+             transactionNumber);
+    }
+
+    FrequentItemsetData(List<Set<I>> frequentItemsetList,
+                        ItemsetSupportStore<I> supportStore,
+                        double minimumSupport,
+                        int transactionNumber) {
+        this(frequentItemsetList,
+             supportStore,
+             minimumSupport,
+             transactionNumber,
+             true,
+             ItemsetMode.ALL);
+    }
+
+    FrequentItemsetData(List<Set<I>> frequentItemsetList,
+                        ItemsetSupportStore<I> supportStore,
+                        double minimumSupport,
+                        int transactionNumber,
+                        boolean complete,
+                        ItemsetMode itemsetMode) {
         this.frequentItemsetList = frequentItemsetList;
-        this.supportCountMap = supportCountMap;
+        this.supportStore = supportStore;
         this.minimumSupport = minimumSupport;
         this.numberOfTransactions = transactionNumber;
+        this.complete = complete;
+        this.itemsetMode = itemsetMode;
     }
 
     public List<Set<I>> getFrequentItemsetList() {
         return frequentItemsetList;
     }
 
+    /**
+     * Returns a read-only map view of the support counts. It holds the 
+     * frequent itemsets, plus the infrequent ones if the engine was asked to
+     * retain them; in the closed mode, it holds the closed itemsets only.
+     */
     public Map<Set<I>, Integer> getSupportCountMap() {
-        return supportCountMap;
+        return supportStore.asMap();
+    }
+
+    ItemsetSupportStore<I> getSupportStore() {
+        return supportStore;
     }
 
     public double getMinimumSupport() {
@@ -123,155 +164,544 @@ class FrequentItemsetData<I> {
         return numberOfTransactions;
     }
 
+    /**
+     * Tells whether all frequent itemsets were mined. A run that ran out of
+     * its time or memory budget returns the itemsets it found by then, which
+     * are the frequent ones up to some size; their support counts are exact.
+     * A top-K run that left out frequent itemsets, and a run whose maximum
+     * itemset length was reached, are incomplete as well.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns which of the frequent itemsets are listed.
+     */
+    public ItemsetMode getItemsetMode() {
+        return itemsetMode;
+    }
+
+    /**
+     * Returns the relative support of the input itemset, which must be one
+     * whose support count is stored, or, in the closed mode, any frequent
+     * itemset.
+     */
     public double getSupport(Set<I> itemset) {
-        return 1.0 * supportCountMap.get(itemset) / numberOfTransactions;
+        int supportCount = supportStore.getSupportCount(itemset);
+
+        if (supportCount < 0) {
+            throw new IllegalArgumentException(
+                    "The support of the itemset is not known: " + itemset);
+        }
+
+        return 1.0 * supportCount / numberOfTransactions;
     }
 }
 
 class AssociationRuleGenerator<I> {
 
+    // The number of itemsets a rule generating thread claims at a time.
+    private static final int CHUNK_SIZE = 64;
+
+    private int parallelism = 1;
+    private MiningListener listener;
+
+    /**
+     * Sets the number of threads that generate rules. The default is 1, which
+     * generates on the calling thread only. The mined rules, and their order,
+     * do not depend on this setting.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "The parallelism is too small: " + parallelism + ", " +
+                    "should be at least 1");
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the listener that receives the statistics of each rule generation
+     * run, or null for none, which is the default.
+     */
+    public void setMiningListener(MiningListener listener) {
+        this.listener = listener;
+    }
+
+    public MiningListener getMiningListener() {
+        return listener;
+    }
+
+    /**
+     * Mines every rule {@code X -> Y} whose confidence reaches the minimum,
+     * where {@code X} and {@code Y} are disjoint and not empty, and their 
+     * union is a listed frequent itemset. This includes the rules whose 
+     * consequent holds one item, such as {@code [a] -> [b]} out of the 
+     * itemset {@code [a, b]}. The rules come sorted by confidence, highest
+     * first.
+     */
     public List<AssociationRule<I>> 
         mineAssociationRules(FrequentItemsetData<I> data,
                              double minimumConfidence) {
         Objects.requireNonNull(data, "The frequent itemset data is null.");
         checkMinimumConfidence(minimumConfidence);
 
-        Set<AssociationRule<I>> resultSet = new HashSet<>();
+        MiningListener listener = this.listener;
+        long start = listener == null ? 0L : System.nanoTime();
+        long allocation = 
+                listener == null ? 0L : AllocationCounter.allocatedBytes();
+        List<Set<I>> itemsetList = data.getFrequentItemsetList();
+        int chunks = (itemsetList.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<AssociationRule<I>> ret = new ArrayList<>();
+        long testedRules = 0;
+
+        if (parallelism == 1 || chunks < 2) {
+            for (Set<I> itemset : itemsetList) {
+                testedRules += generateAssociationRules(itemset, 
+                                                        data, 
+                                                        minimumConfidence, 
+                                                        ret);
+            }
+        } else {
+            // Each chunk of itemsets gets its own result list, and the lists
+            // are concatenated in chunk order, so that the output does not 
+            // depend on the scheduling.
+            List<List<AssociationRule<I>>> chunkResultList = 
+                    new ArrayList<>(chunks);
+
+            for (int i = 0; i < chunks; ++i) {
+                chunkResultList.add(new ArrayList<>());
+            }
 
-        for (Set<I> itemset : data.getFrequentItemsetList()) {
-            if (itemset.size() < 2) {
-                // Any association rule requires at least one item in the 
-                // antecedent, and at least one item in the consequent. An
-                // itemset containing less than two items cannot satisfy this
-                // requirement; skip it.
-                continue;
+            AtomicInteger nextChunk = new AtomicInteger();
+            List<Callable<Long>> taskList = new ArrayList<>(parallelism);
+
+            for (int i = 0; i < parallelism; ++i) {
+                taskList.add(() -> {
+                    long taskTestedRules = 0;
+                    int chunk;
+
+                    while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                        int end = Math.min((chunk + 1) * CHUNK_SIZE, 
+                                           itemsetList.size());
+
+                        for (int j = chunk * CHUNK_SIZE; j < end; ++j) {
+                            taskTestedRules += generateAssociationRules(
+                                    itemsetList.get(j),
+                                    data,
+                                    minimumConfidence,
+                                    chunkResultList.get(chunk));
+                        }
+                    }
+
+                    return taskTestedRules;
+                });
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+            try {
+                for (Future<Long> future : pool.invokeAll(taskList)) {
+                    testedRules += future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while generating the rules.", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(
+                        "Generating the rules failed.", ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+
+            for (List<AssociationRule<I>> chunkResult : chunkResultList) {
+                ret.addAll(chunkResult);
+            }
+        }
+
+        ret.sort((a1, a2) -> Double.compare(a2.getConfidence(), 
+                                            a1.getConfidence()));
+
+        if (listener != null) {
+            listener.rulesCompleted(new MiningListener.RuleStatistics(
+                    itemsetList.size(),
+                    testedRules,
+                    ret.size(),
+                    System.nanoTime() - start,
+                    AllocationCounter.allocatedSince(allocation)));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Mines the {@code k} best confident rules by the input ranking, best 
+     * first. Of the rules tied with the last one, those found first are 
+     * kept. Ranking by confidence raises the minimum confidence to that of 
+     * the {@code k}-th best rule so far, which prunes the rule search like a
+     * higher minimum confidence does. Ranking by lift leaves out the rules 
+     * whose consequent support is not known. The rules are always generated 
+     * on the calling thread.
+     */
+    public List<AssociationRule<I>> 
+        mineTopAssociationRules(FrequentItemsetData<I> data,
+                                double minimumConfidence,
+                                int k,
+                                RuleRanking ranking) {
+        Objects.requireNonNull(data, "The frequent itemset data is null.");
+        Objects.requireNonNull(ranking, "The ranking is null.");
+        checkMinimumConfidence(minimumConfidence);
+
+        if (k < 1) {
+            throw new IllegalArgumentException(
+                    "The number of rules is too small: " + k + ", " +
+                    "should be at least 1");
+        }
+
+        MiningListener listener = this.listener;
+        long start = listener == null ? 0L : System.nanoTime();
+        long allocation = 
+                listener == null ? 0L : AllocationCounter.allocatedBytes();
+        List<Set<I>> itemsetList = data.getFrequentItemsetList();
+        ItemsetSupportStore<I> supportStore = data.getSupportStore();
+
+        // The worst of the best rules so far is at the head.
+        PriorityQueue<RankedRule<I>> heap = 
+                new PriorityQueue<>(k, RankedRule::compareWorstFirst);
+        List<AssociationRule<I>> ruleList = new ArrayList<>();
+        long testedRules = 0;
+        long sequence = 0;
+
+        for (Set<I> itemset : itemsetList) {
+            double confidence = 
+                    ranking == RuleRanking.CONFIDENCE && heap.size() == k ?
+                    Math.max(minimumConfidence, heap.peek().score) :
+                    minimumConfidence;
+            testedRules += generateAssociationRules(itemset, 
+                                                    data, 
+                                                    confidence, 
+                                                    ruleList);
+
+            for (AssociationRule<I> rule : ruleList) {
+                double score = rule.getConfidence();
+
+                if (ranking == RuleRanking.LIFT) {
+                    int consequentSupportCount = 
+                            supportStore.getSupportCount(rule.getConsequent());
+
+                    if (consequentSupportCount <= 0) {
+                        continue;
+                    }
+
+                    score = score * data.getTransactionNumber() 
+                                  / consequentSupportCount;
+                }
+
+                if (heap.size() < k) {
+                    heap.add(new RankedRule<>(rule, score, sequence++));
+                } else if (score > heap.peek().score) {
+                    heap.poll();
+                    heap.add(new RankedRule<>(rule, score, sequence++));
+                }
             }
 
-            // Generate the basic association rules out of current itemset.
-            // An association rule is basic iff its consequent contains only one
-            // item.
-            Set<AssociationRule<I>> basicAssociationRuleSet = 
-                    generateAllBasicAssociationRules(itemset, data);
+            ruleList.clear();
+        }
+
+        List<RankedRule<I>> rankedRuleList = new ArrayList<>(heap);
+        rankedRuleList.sort((r1, r2) -> RankedRule.compareWorstFirst(r2, r1));
+        List<AssociationRule<I>> ret = new ArrayList<>(rankedRuleList.size());
 
-            generateAssociationRules(itemset,
-                                     basicAssociationRuleSet,
-                                     data,
-                                     minimumConfidence,
-                                     resultSet);
+        for (RankedRule<I> rankedRule : rankedRuleList) {
+            ret.add(rankedRule.rule);
         }
 
-        List<AssociationRule<I>> ret = new ArrayList<>(resultSet);
+        if (listener != null) {
+            listener.rulesCompleted(new MiningListener.RuleStatistics(
+                    itemsetList.size(),
+                    testedRules,
+                    ret.size(),
+                    System.nanoTime() - start,
+                    AllocationCounter.allocatedSince(allocation)));
+        }
 
-        return resultSet.stream().sorted((a1, a2) -> Double.compare(a2.getConfidence(), a1.getConfidence())).collect(Collectors.toList());
+        return ret;
     }
 
-    private void generateAssociationRules(Set<I> itemset,
-                                          Set<AssociationRule<I>> ruleSet,
-                                          FrequentItemsetData<I> data,
-                                          double minimumConfidence,
-                                          Set<AssociationRule<I>> collector) {
-        if (ruleSet.isEmpty()) {
-            return;
+    /**
+     * A rule with its score, and the order it was found in.
+     */
+    private static final class RankedRule<I> {
+
+        final AssociationRule<I> rule;
+        final double score;
+        final long sequence;
+
+        RankedRule(AssociationRule<I> rule, double score, long sequence) {
+            this.rule = rule;
+            this.score = score;
+            this.sequence = sequence;
         }
 
+        /**
+         * Orders the lower scores first, and among equal scores, the rules
+         * found later.
+         */
+        static int compareWorstFirst(RankedRule<?> r1, RankedRule<?> r2) {
+            int cmp = Double.compare(r1.score, r2.score);
+            return cmp != 0 ? cmp : Long.compare(r2.sequence, r1.sequence);
+        }
+    }
+
+    /**
+     * Generates the confident rules whose antecedent and consequent together
+     * make up the input itemset. Within the itemset, antecedents and 
+     * consequents are bitmasks over the itemset's item ids, sorted ascending,
+     * and supports are looked up in the {@link ItemsetSupportStore} by id, so
+     * only the rules that pass the minimum confidence are ever materialized.
+     *
+     * @return the number of rules whose confidence was computed.
+     */
+    private int generateAssociationRules(Set<I> itemset,
+                                          FrequentItemsetData<I> data,
+                                          double minimumConfidence,
+                                          List<AssociationRule<I>> collector) {
         // The size of the itemset.
         int k = itemset.size(); 
-        // The size of the consequent of the input rules.
-        int m = ruleSet.iterator().next().getConsequent().size();
 
-        // Test whether we can pull one more item from the antecedent to 
-        // consequent.
-        if (k > m + 1) {
-            Set<AssociationRule<I>> nextRules =
-                    moveOneItemToConsequents(itemset, ruleSet, data);
+        if (k < 2) {
+            // Any association rule requires at least one item in the 
+            // antecedent, and at least one item in the consequent. An
+            // itemset containing less than two items cannot satisfy this
+            // requirement; skip it.
+            return 0;
+        }
 
-            Iterator<AssociationRule<I>> iterator = nextRules.iterator();
+        if (k >= Long.SIZE) {
+            throw new IllegalArgumentException(
+                    "The itemset is too large: " + k + " items, should be " +
+                    "at most " + (Long.SIZE - 1));
+        }
 
-            while (iterator.hasNext()) {
-                AssociationRule<I> rule = iterator.next();
+        ItemsetSupportStore<I> supportStore = data.getSupportStore();
+        int[] itemIds = supportStore.getDictionary().encode(itemset);
+        SubsetView<I> antecedent = 
+                new SubsetView<>(supportStore.getDictionary(), itemIds);
+        SubsetView<I> consequent = new SubsetView<>(antecedent);
+        long fullMask = (1L << k) - 1;
+        antecedent.mask = fullMask;
+        double itemsetSupportCount = antecedent.getSupportCount(supportStore);
+
+        // The consequents of the confident rules with 'm' items in the 
+        // consequent, in ascending order. Moving items from the antecedent to
+        // the consequent never raises the confidence, so a consequent with
+        // m + 1 items is only worth testing if all of its m-subsets made a
+        // confident rule.
+        long[] consequents = new long[k];
+        int consequentCount = 0;
+
+        int testedRules = k;
+
+        // Start with the basic association rules, whose consequent contains
+        // only one item.
+        for (int i = 0; i < k; ++i) {
+            long mask = 1L << i;
+
+            if (tryAddRule(mask, fullMask, itemsetSupportCount, 
+                           antecedent, consequent, supportStore,
+                           minimumConfidence, collector)) {
+                consequents[consequentCount++] = mask;
+            }
+        }
 
-                if (rule.getConfidence() >= minimumConfidence) {
-                    collector.add(rule);
-                } else {
-                    iterator.remove();
+        // Pull one more item from the antecedent to the consequent, as long
+        // as the antecedent keeps at least one item.
+        for (int m = 1; m < k - 1 && consequentCount > 1; ++m) {
+            long[] nextConsequents = new long[16];
+            int nextCount = 0;
+
+            for (int i = 0; i < consequentCount; ++i) {
+                long mask1 = consequents[i];
+                long rest = mask1 & (mask1 - 1);
+
+                // The masks sharing all but their lowest item are contiguous
+                // in ascending order. Joining only those builds each mask of
+                // the next size once, out of the two masks that lack one of
+                // its two lowest items.
+                for (int j = i + 1; j < consequentCount; ++j) {
+                    long mask2 = consequents[j];
+
+                    if ((mask2 & (mask2 - 1)) != rest) {
+                        break;
+                    }
+
+                    long mask = mask1 | mask2;
+
+                    if (!allSubsetsConfident(mask, 
+                                             consequents, 
+                                             consequentCount)) {
+                        continue;
+                    }
+
+                    ++testedRules;
+
+                    if (tryAddRule(mask, fullMask, itemsetSupportCount, 
+                                   antecedent, consequent, supportStore,
+                                   minimumConfidence, collector)) {
+                        if (nextCount == nextConsequents.length) {
+                            nextConsequents = Arrays.copyOf(nextConsequents, 
+                                                            2 * nextCount);
+                        }
+
+                        nextConsequents[nextCount++] = mask;
+                    }
                 }
             }
 
-            generateAssociationRules(itemset,
-                                     nextRules,
-                                     data,
-                                     minimumConfidence,
-                                     collector);
+            Arrays.sort(nextConsequents, 0, nextCount);
+            consequents = nextConsequents;
+            consequentCount = nextCount;
         }
+
+        return testedRules;
     }
 
-    private Set<AssociationRule<I>> 
-        moveOneItemToConsequents(Set<I> itemset, 
-                                 Set<AssociationRule<I>> ruleSet,
-                                 FrequentItemsetData<I> data) {
-        Set<AssociationRule<I>> output = new HashSet<>();
-        Set<I> antecedent = new HashSet<>();
-        Set<I> consequent = new HashSet<>();
-        double itemsetSupportCount = data.getSupportCountMap().get(itemset);
+    /**
+     * Tests the rule with the input consequent, and adds it to the collector
+     * if it is confident enough.
+     */
+    private boolean tryAddRule(long consequentMask,
+                               long fullMask,
+                               double itemsetSupportCount,
+                               SubsetView<I> antecedent,
+                               SubsetView<I> consequent,
+                               ItemsetSupportStore<I> supportStore,
+                               double minimumConfidence,
+                               List<AssociationRule<I>> collector) {
+        antecedent.mask = fullMask & ~consequentMask;
+        double confidence = itemsetSupportCount 
+                          / antecedent.getSupportCount(supportStore);
+
+        if (confidence < minimumConfidence) {
+            return false;
+        }
 
-        // For each rule ...
-        for (AssociationRule<I> rule : ruleSet) {
-            antecedent.clear();
-            consequent.clear();
-            antecedent.addAll(rule.getAntecedent());
-            consequent.addAll(rule.getConsequent());
+        consequent.mask = consequentMask;
+        collector.add(new AssociationRule<>(antecedent, 
+                                            consequent, 
+                                            confidence));
+        return true;
+    }
 
-            // ... move one item from its antecedent to its consequnt.
-            for (I item : rule.getAntecedent()) {
-                antecedent.remove(item);
-                consequent.add(item);
+    private static boolean allSubsetsConfident(long mask,
+                                               long[] consequents,
+                                               int consequentCount) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            long subset = mask & ~Long.lowestOneBit(rest);
 
-                int antecedentSupportCount = data.getSupportCountMap()
-                                                 .get(antecedent);
-                AssociationRule<I> newRule = 
-                        new AssociationRule<>(
-                                antecedent,
-                                consequent,
-                                itemsetSupportCount / antecedentSupportCount);
+            if (Arrays.binarySearch(consequents, 0, consequentCount, subset) 
+                    < 0) {
+                return false;
+            }
+        }
 
-                output.add(newRule);
+        return true;
+    }
 
-                antecedent.add(item);
-                consequent.remove(item);
+    /**
+     * A read-only view of the items of an itemset selected by a bitmask. The
+     * same view serves for every candidate rule of the itemset, and is only
+     * copied when a confident rule is made out of it.
+     */
+    private static final class SubsetView<I> extends AbstractSet<I> {
+
+        private final Object[] items;
+        private final int[] itemIds;
+        private final int[] buffer;
+        long mask;
+
+        /**
+         * @param itemIds the ids of the items of the itemset, sorted.
+         */
+        SubsetView(ItemDictionary<I> dictionary, int[] itemIds) {
+            this.items = new Object[itemIds.length];
+            this.itemIds = itemIds;
+            this.buffer = new int[itemIds.length];
+
+            for (int i = 0; i < items.length; ++i) {
+                items[i] = dictionary.getItem(itemIds[i]);
             }
         }
 
-        return output;
-    }
+        SubsetView(SubsetView<I> other) {
+            this.items = other.items;
+            this.itemIds = other.itemIds;
+            this.buffer = new int[other.buffer.length];
+        }
 
-    private Set<AssociationRule<I>> 
-        generateAllBasicAssociationRules(Set<I> itemset,
-                                         FrequentItemsetData<I> data) {
-        Set<AssociationRule<I>> basicAssociationRuleSet =
-                new HashSet<>(itemset.size());
+        /**
+         * Looks up the support count of the selected items. The ids are
+         * gathered in ascending order, just as the store wants them.
+         */
+        int getSupportCount(ItemsetSupportStore<I> supportStore) {
+            int length = 0;
 
-        Set<I> antecedent = new HashSet<>(itemset);
-        Set<I> consequent = new HashSet<>(1);
+            for (long rest = mask; rest != 0; rest &= rest - 1) {
+                buffer[length++] = 
+                        itemIds[Long.numberOfTrailingZeros(rest)];
+            }
 
-        for (I item : itemset) {
-            antecedent.remove(item);
-            consequent.add(item);
+            return supportStore.getSupportCount(buffer, length);
+        }
 
-            int itemsetSupportCount = data.getSupportCountMap().get(itemset);
-            int antecedentSupportCount = data.getSupportCountMap()
-                                             .get(antecedent);
+        @Override
+        public int size() {
+            return Long.bitCount(mask);
+        }
 
-            double confidence = 1.0 * itemsetSupportCount 
-                                    / antecedentSupportCount;
+        @Override
+        public boolean contains(Object o) {
+            for (long rest = mask; rest != 0; rest &= rest - 1) {
+                if (Objects.equals(items[Long.numberOfTrailingZeros(rest)], 
+                                   o)) {
+                    return true;
+                }
+            }
 
-            basicAssociationRuleSet.add(new AssociationRule(antecedent, 
-                                                            consequent,
-                                                            confidence));
-            antecedent.add(item);
-            consequent.remove(item);
+            return false;
         }
 
-        return basicAssociationRuleSet;
+        @Override
+        public Iterator<I> iterator() {
+            return new Iterator<I>() {
+
+                private long rest = mask;
+
+                @Override
+                public boolean hasNext() {
+                    return rest != 0;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public I next() {
+                    if (rest == 0) {
+                        throw new NoSuchElementException();
+                    }
+
+                    int index = Long.numberOfTrailingZeros(rest);
+                    rest &= rest - 1;
+                    return (I) items[index];
+                }
+            };
+        }
     }
 
     private void checkMinimumConfidence(double minimumConfidence) {
@@ -296,295 +726,1005 @@ class AssociationRuleGenerator<I> {
     }
 }
 
-class AprioriFrequentItemsetGenerator<I> {
+class AprioriFrequentItemsetGenerator<I> 
+        extends AbstractFrequentItemsetGenerator<I> {
+
+    // The number of transactions a counting thread claims at a time.
+    private static final int CHUNK_SIZE = 1024;
+
+    private int parallelism = 1;
+    private boolean aprioriTid;
+    private MiningListener listener;
+    private FrequentItemsetConsumer<I> consumer;
+    private int topK;
+    private long timeBudgetMillis = Long.MAX_VALUE;
+    private long memoryBudget = Long.MAX_VALUE;
+
+    /**
+     * Sets the number of threads that count the candidate supports at each 
+     * level. The default is 1, which counts on the calling thread only. The
+     * mined itemsets do not depend on this setting.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "The parallelism is too small: " + parallelism + ", " +
+                    "should be at least 1");
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Enables AprioriTid counting. From level 2 on, each transaction is then
+     * replaced by the ids of the frequent itemsets of the previous level it
+     * contains, and a candidate is contained in a transaction iff both 
+     * itemsets it was joined from are. This pays off on sparse data, where 
+     * the replaced transactions shrink and vanish quickly; it always counts 
+     * on the calling thread. Disabled by default.
+     */
+    public void setAprioriTid(boolean aprioriTid) {
+        this.aprioriTid = aprioriTid;
+    }
+
+    public boolean isAprioriTid() {
+        return aprioriTid;
+    }
+
+    /**
+     * Sets the listener that receives the statistics of each level, or null
+     * for none, which is the default. Without a listener, nothing is 
+     * measured.
+     */
+    public void setMiningListener(MiningListener listener) {
+        this.listener = listener;
+    }
 
-    public FrequentItemsetData<I> generate(List<Set<I>> transactionList, 
-                                           double minimumSupport) {
-        Objects.requireNonNull(transactionList, "The itemset list is empty.");
-        checkSupport(minimumSupport);
+    public MiningListener getMiningListener() {
+        return listener;
+    }
 
-        if (transactionList.isEmpty()) {
-            return null;
+    /**
+     * Sets the consumer that receives the frequent itemsets of each level as
+     * soon as the level is counted, or null for none, which is the default.
+     * A level is final once counted only if all frequent itemsets are kept,
+     * so a consumer requires the {@link ItemsetMode#ALL} mode and no top-K.
+     */
+    public void setFrequentItemsetConsumer(
+            FrequentItemsetConsumer<I> consumer) {
+        this.consumer = consumer;
+    }
+
+    public FrequentItemsetConsumer<I> getFrequentItemsetConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Keeps only the {@code topK} itemsets of the highest support, of any 
+     * size, among those that reach the minimum support; itemsets tied with
+     * the last one are kept as well. While mining, the support count of the
+     * {@code topK}-th best itemset so far serves as a rising threshold, which
+     * stops the search below it early. Zero, the default, keeps all frequent
+     * itemsets. A top-K cannot be combined with the closed or maximal mode.
+     */
+    public void setTopK(int topK) {
+        if (topK < 0) {
+            throw new IllegalArgumentException(
+                    "The top-K is negative: " + topK);
         }
 
-        // Maps each itemset to its support count. Support count is simply the 
-        // number of times an itemset appeares in the transaction list.
-        Map<Set<I>, Integer> supportCountMap = new HashMap<>();
+        this.topK = topK;
+    }
 
-        // Get the list of 1-itemsets that are frequent.
-        List<Set<I>> frequentItemList = findFrequentItems(transactionList,
-                                                          supportCountMap,
-                                                          minimumSupport);
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * Sets the wall-clock time a run may take. Once it is used up, the level
+     * being counted is dropped, and the itemsets of the completed levels are
+     * returned, marked as incomplete. In the closed and maximal modes, the
+     * itemsets of the last completed level are then not listed, as their
+     * supersets were never counted. Unlimited by default.
+     */
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        if (timeBudgetMillis < 1) {
+            throw new IllegalArgumentException(
+                    "The time budget is too small: " + timeBudgetMillis + 
+                    ", should be at least 1");
+        }
+
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * Sets the heap, in bytes, that may be in use while mining, as reported
+     * by {@link Runtime}. Once it is exceeded, the run stops as if its time 
+     * budget was used up. Unlimited by default.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException(
+                    "The memory budget is too small: " + memoryBudget + ", " +
+                    "should be at least 1");
+        }
 
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    @Override
+    FrequentItemsetData<I> generate(TransactionDatabase<I> database,
+                                    double minimumSupport) {
+        int transactions = database.getTransactionNumber();
+        Budget budget = new Budget(timeBudgetMillis, memoryBudget);
+        SupportThreshold threshold = topK > 0 ? 
+                                     new SupportThreshold(topK) : 
+                                     null;
+        MiningListener listener = this.listener;
+        FrequentItemsetConsumer<I> consumer = this.consumer;
+        long levelStart = listener == null ? 0L : System.nanoTime();
+        long levelAllocation = 
+                listener == null ? 0L : AllocationCounter.allocatedBytes();
+
+        if (threshold != null && getItemsetMode() != ItemsetMode.ALL) {
+            throw new IllegalStateException(
+                    "The " + getItemsetMode() + " mode cannot be combined " +
+                    "with a top-K, whose cut-off hides the supersets that " +
+                    "decide it.");
+        }
+
+        if (consumer != null) {
+            if (threshold != null || getItemsetMode() != ItemsetMode.ALL) {
+                throw new IllegalStateException(
+                        "Itemsets are streamed only in the ALL mode, " +
+                        "without a top-K.");
+            }
+
+            consumer.start(database.getDictionary(), transactions);
+        }
+
+        // Records the support count of each counted itemset. Support count is
+        // simply the number of times an itemset appeares in the transaction 
+        // list.
+        FrequentItemsetCollector<I> collector = newCollector(database);
+
+        // Get the list of 1-itemsets that are frequent.
+        List<int[]> frequentItemList = findFrequentItems(database,
+                                                         collector,
+                                                         minimumSupport,
+                                                         threshold);
 
         // Maps each 'k' to the list of frequent k-itemsets. 
-        Map<Integer, List<Set<I>>> map = new HashMap<>();
+        Map<Integer, List<int[]>> map = new HashMap<>();
         map.put(1, frequentItemList);
 
+        if (consumer != null) {
+            for (int[] itemset : frequentItemList) {
+                consumer.accept(itemset, 
+                                database.getItemSupportCount(itemset[0]));
+            }
+        }
+
+        if (listener != null) {
+            listener.levelCompleted(new MiningListener.LevelStatistics(
+                    1,
+                    database.getItemNumber(),
+                    0,
+                    frequentItemList.size(),
+                    database.getTransactions().length,
+                    System.nanoTime() - levelStart,
+                    AllocationCounter.allocatedSince(levelAllocation)));
+        }
+
+        // The working copy of the transactions, shrunk as the levels go by.
+        // Dropping the infrequent items keeps exactly the ids below the 
+        // number of frequent items, which are also the indices of the 
+        // frequent items in 'frequentItemList'. Each transaction counts as
+        // many times as its weight, which sits at the same index of 
+        // 'weightArray'; the filters below compact the weights along with the
+        // transactions.
+        int[] weightArray = database.getWeights().clone();
+        int[][] transactionArray = 
+                removeInfrequentItems(database.getTransactions(),
+                                      weightArray,
+                                      frequentItemList.size());
+
+        if (isCollapseDuplicates()) {
+            // Without their infrequent items, more transactions are alike.
+            transactionArray = Arrays.copyOf(
+                    transactionArray,
+                    TransactionDatabase.collapseDuplicates(
+                            transactionArray,
+                            weightArray,
+                            transactionArray.length));
+        }
+
         // 'k' denotes the cardinality of itemsets processed at each iteration
         // of the following loop.
         int k = 1;
 
-        do {
-            ++k;
+        ForkJoinPool pool = parallelism > 1 ? 
+                            new ForkJoinPool(parallelism) : 
+                            null;
+
+        try {
+            while (!map.get(k).isEmpty() && k < getMaximumItemsetLength()) {
+                if (budget.isExhausted()) {
+                    collector.setCompleteLevels(k);
+                    break;
+                }
+
+                ++k;
+
+                int[] prunedCounter = null;
+                int minimumSupportCount = 
+                        threshold == null ? 0 : threshold.get();
+                int scannedTransactions = transactionArray.length;
+
+                if (listener != null) {
+                    levelStart = System.nanoTime();
+                    levelAllocation = AllocationCounter.allocatedBytes();
+                    prunedCounter = new int[1];
+                }
+
+                // First generate the candidates. The frequent itemsets of each
+                // level stay in lexicographic order, as the candidate 
+                // generator requires.
+                List<int[]> candidateList = 
+                        CandidateGenerator.generateCandidates(map.get(k - 1),
+                                                              prunedCounter);
+
+                int[] supportCounts;
+
+                if (aprioriTid) {
+                    supportCounts = new int[candidateList.size()];
+                    transactionArray = 
+                            countCandidateTransactions(map.get(k - 1),
+                                                       candidateList,
+                                                       transactionArray,
+                                                       weightArray,
+                                                       supportCounts);
+                } else {
+                    // Index the candidates, and let each transaction reach 
+                    // only the candidates it contains.
+                    CandidateTrie candidateTrie = 
+                            new CandidateTrie(candidateList);
+
+                    if (!countSupports(candidateTrie, 
+                                       transactionArray, 
+                                       weightArray,
+                                       pool, 
+                                       budget)) {
+                        // The budget ran out within the level; its counts
+                        // are partial, so drop it.
+                        collector.setCompleteLevels(k - 1);
+                        break;
+                    }
+
+                    supportCounts = candidateTrie.getSupportCounts();
+
+                    // A transaction shorter than k + 1 contains no candidate 
+                    // of the next level.
+                    transactionArray = 
+                            removeShortTransactions(transactionArray, 
+                                                    weightArray,
+                                                    k + 1);
+                }
+
+                map.put(k, getNextItemsets(candidateList,
+                                           supportCounts,
+                                           collector,
+                                           minimumSupport, 
+                                           transactions,
+                                           minimumSupportCount,
+                                           threshold));
+
+                if (consumer != null) {
+                    acceptLevel(consumer, 
+                                candidateList, 
+                                supportCounts, 
+                                map.get(k));
+                }
+
+                if (aprioriTid) {
+                    transactionArray = 
+                            renumberCandidateTransactions(transactionArray,
+                                                          weightArray,
+                                                          supportCounts,
+                                                          transactions,
+                                                          minimumSupport,
+                                                          minimumSupportCount);
+                }
+
+                if (listener != null) {
+                    listener.levelCompleted(
+                            new MiningListener.LevelStatistics(
+                                    k,
+                                    candidateList.size(),
+                                    prunedCounter[0],
+                                    map.get(k).size(),
+                                    scannedTransactions,
+                                    System.nanoTime() - levelStart,
+                                    AllocationCounter.allocatedSince(
+                                            levelAllocation)));
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        if (threshold != null) {
+            collector.setMinimumSupportCount(threshold.get());
+        }
+
+        return collector.toFrequentItemsetData(minimumSupport, transactions);
+    }
+
+    /**
+     * Counts the candidates in the input transactions, checking the budget 
+     * after every chunk of transactions.
+     *
+     * @return false if the budget ran out before all transactions were
+     *         counted.
+     */
+    private boolean countSupports(CandidateTrie candidateTrie,
+                                  int[][] transactions,
+                                  int[] weights,
+                                  ForkJoinPool pool,
+                                  Budget budget) {
+        if (pool == null 
+                || candidateTrie.size() == 0
+                || transactions.length <= CHUNK_SIZE) {
+            for (int i = 0; i < transactions.length; ++i) {
+                if (i % CHUNK_SIZE == 0 && i > 0 && budget.isExhausted()) {
+                    return false;
+                }
+
+                candidateTrie.count(transactions[i],
+                                    0,
+                                    transactions[i].length,
+                                    weights[i]);
+            }
+
+            return true;
+        }
+
+        // Each task counts into its own array, claiming chunks of 
+        // transactions until none are left. Summing the arrays afterwards 
+        // gives exactly the counts of the sequential loop above.
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<Callable<int[]>> taskList = new ArrayList<>(parallelism);
+
+        for (int i = 0; i < parallelism; ++i) {
+            taskList.add(() -> {
+                int[] counterArray = new int[candidateTrie.size()];
+                CandidateTrie.HitConsumer counter =
+                        (candidateIndex, weight) ->
+                                counterArray[candidateIndex] += weight;
+                int start;
+
+                while ((start = nextChunk.getAndAdd(CHUNK_SIZE)) 
+                        < transactions.length) {
+                    if (budget.isExhausted()) {
+                        return null;
+                    }
+
+                    int end = Math.min(start + CHUNK_SIZE, 
+                                       transactions.length);
+
+                    for (int j = start; j < end; ++j) {
+                        candidateTrie.count(transactions[j],
+                                            0,
+                                            transactions[j].length,
+                                            weights[j],
+                                            counter);
+                    }
+                }
+
+                return counterArray;
+            });
+        }
 
-            // First generate the candidates.
-            List<Set<I>> candidateList = 
-                    generateCandidates(map.get(k - 1));
+        try {
+            boolean complete = true;
 
-            for (Set<I> transaction : transactionList) {
-                List<Set<I>> candidateList2 = subset(candidateList,
-                                                     transaction);
+            for (Future<int[]> future : pool.invokeAll(taskList)) {
+                int[] counterArray = future.get();
 
-                for (Set<I> itemset : candidateList2) {
-                    supportCountMap.put(itemset,
-                                        supportCountMap.getOrDefault(itemset, 
-                                                                     0) + 1);
+                if (counterArray == null) {
+                    complete = false;
+                } else {
+                    candidateTrie.addSupportCounts(counterArray);
                 }
             }
 
-            map.put(k, getNextItemsets(candidateList,
-                                       supportCountMap, 
-                                       minimumSupport, 
-                                       transactionList.size()));
+            return complete;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while counting the supports.", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(
+                    "Counting the supports failed.", ex.getCause());
+        }
+    }
 
-        } while (!map.get(k).isEmpty());
+    /**
+     * Returns the input transactions without their infrequent items, leaving
+     * out the transactions with less than two frequent items. The item ids
+     * are sorted by descending support, so the frequent items of each 
+     * transaction are a prefix of it. The weights of the kept transactions
+     * are moved along with them, to the front of {@code weights}.
+     */
+    private static int[][] removeInfrequentItems(int[][] transactions,
+                                                 int[] weights,
+                                                 int frequentItems) {
+        List<int[]> ret = new ArrayList<>(transactions.length);
+
+        for (int t = 0; t < transactions.length; ++t) {
+            int[] transaction = transactions[t];
+            int length = frequentPrefixLength(transaction, frequentItems);
+
+            if (length == transaction.length) {
+                weights[ret.size()] = weights[t];
+                ret.add(transaction);
+            } else if (length >= 2) {
+                weights[ret.size()] = weights[t];
+                ret.add(Arrays.copyOf(transaction, length));
+            }
+        }
 
-        return new FrequentItemsetData<>(extractFrequentItemsets(map),
-                                         supportCountMap,
-                                         minimumSupport,
-                                         transactionList.size());
+        return ret.toArray(new int[ret.size()][]);
     }
 
-    private List<Set<I>>
-        extractFrequentItemsets(Map<Integer, List<Set<I>>> map) {
-        List<Set<I>> ret = new ArrayList<>();
+    private static int[][] removeShortTransactions(int[][] transactions,
+                                                   int[] weights,
+                                                   int minimumLength) {
+        int kept = 0;
+
+        for (int[] transaction : transactions) {
+            if (transaction.length >= minimumLength) {
+                ++kept;
+            }
+        }
+
+        if (kept == transactions.length) {
+            return transactions;
+        }
+
+        int[][] ret = new int[kept][];
+        int index = 0;
 
-        for (List<Set<I>> itemsetList : map.values()) {
-            ret.addAll(itemsetList);
+        for (int t = 0; t < transactions.length; ++t) {
+            if (transactions[t].length >= minimumLength) {
+                weights[index] = weights[t];
+                ret[index++] = transactions[t];
+            }
         }
 
         return ret;
     }
 
-    private List<Set<I>> getNextItemsets(List<Set<I>> candidateList,
-                                         Map<Set<I>, Integer> supportCountMap,
-                                         double minimumSupport,
-                                         int transactions) {
-        List<Set<I>> ret = new ArrayList<>(candidateList.size());
+    /**
+     * Counts the candidates the AprioriTid way. Each input transaction is the
+     * sorted array of the indices, in {@code itemsetList}, of the frequent 
+     * (k - 1)-itemsets it contains. A candidate is contained in a transaction
+     * iff the two itemsets it was joined from are. The weights of the kept
+     * transactions are moved along with them.
+     *
+     * @return the transactions as sorted arrays of the indices of the 
+     *         candidates they contain.
+     */
+    private static int[][] 
+        countCandidateTransactions(List<int[]> itemsetList,
+                                   List<int[]> candidateList,
+                                   int[][] transactions,
+                                   int[] weights,
+                                   int[] supportCounts) {
+        int candidates = candidateList.size();
+
+        // The candidates joined from the itemset at index 'p' are contiguous,
+        // starting at candidateStart[p] and ending right before 
+        // candidateStart[p + 1], and sorted by their second parent.
+        int[] candidateStart = new int[itemsetList.size() + 1];
+        int[] secondParents = new int[candidates];
+        int k = candidates == 0 ? 0 : candidateList.get(0).length;
+
+        for (int c = 0; c < candidates; ++c) {
+            int[] candidate = candidateList.get(c);
+            int firstParent = 
+                    CandidateGenerator.indexOfSubset(itemsetList, 
+                                                     candidate, 
+                                                     k - 1);
+            secondParents[c] = 
+                    CandidateGenerator.indexOfSubset(itemsetList, 
+                                                     candidate, 
+                                                     k - 2);
+            ++candidateStart[firstParent + 1];
+        }
 
-        for (Set<I> itemset : candidateList) {
-            if (supportCountMap.containsKey(itemset)) {
-                int supportCount = supportCountMap.get(itemset);
-                double support = 1.0 * supportCount / transactions;
+        for (int p = 0; p < itemsetList.size(); ++p) {
+            candidateStart[p + 1] += candidateStart[p];
+        }
 
-                if (support >= minimumSupport) {
-                    ret.add(itemset);
+        int[][] ret = new int[transactions.length][];
+        int[] buffer = new int[16];
+        int retSize = 0;
+
+        for (int t = 0; t < transactions.length; ++t) {
+            int[] transaction = transactions[t];
+            int length = 0;
+
+            for (int i = 0; i < transaction.length; ++i) {
+                int p = transaction[i];
+                int c = candidateStart[p];
+                int end = candidateStart[p + 1];
+                int j = i + 1;
+
+                // Both the second parents and the transaction are sorted.
+                while (c < end && j < transaction.length) {
+                    if (secondParents[c] < transaction[j]) {
+                        ++c;
+                    } else if (secondParents[c] > transaction[j]) {
+                        ++j;
+                    } else {
+                        supportCounts[c] += weights[t];
+
+                        if (length == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, 2 * length);
+                        }
+
+                        buffer[length++] = c;
+                        ++c;
+                        ++j;
+                    }
                 }
             }
+
+            if (length > 0) {
+                weights[retSize] = weights[t];
+                ret[retSize++] = Arrays.copyOf(buffer, length);
+            }
         }
 
-        return ret;
+        return Arrays.copyOf(ret, retSize);
     }
 
-    private List<Set<I>> subset(List<Set<I>> candidateList, 
-                                Set<I> transaction) {
-        List<Set<I>> ret = new ArrayList<>(candidateList.size());
+    /**
+     * Maps the candidate indices in the input transactions to the indices of 
+     * the frequent itemsets among the candidates, dropping the infrequent 
+     * ones, and the transactions left with less than two entries.
+     */
+    private static int[][] 
+        renumberCandidateTransactions(int[][] transactions,
+                                      int[] weights,
+                                      int[] supportCounts,
+                                      int transactionNumber,
+                                      double minimumSupport,
+                                      int minimumSupportCount) {
+        int[] indexMap = new int[supportCounts.length];
+        int frequentItemsets = 0;
+
+        for (int c = 0; c < supportCounts.length; ++c) {
+            indexMap[c] = isFrequent(supportCounts[c], 
+                                     transactionNumber, 
+                                     minimumSupport) 
+                          && supportCounts[c] >= minimumSupportCount ?
+                          frequentItemsets++ :
+                          -1;
+        }
+
+        List<int[]> ret = new ArrayList<>(transactions.length);
+
+        for (int t = 0; t < transactions.length; ++t) {
+            int[] transaction = transactions[t];
+            int length = 0;
+
+            for (int c : transaction) {
+                if (indexMap[c] >= 0) {
+                    transaction[length++] = indexMap[c];
+                }
+            }
 
-        for (Set<I> candidate : candidateList) {
-            if (transaction.containsAll(candidate)) {
-                ret.add(candidate);
+            if (length >= 2) {
+                weights[ret.size()] = weights[t];
+                ret.add(length == transaction.length ?
+                        transaction :
+                        Arrays.copyOf(transaction, length));
             }
         }
 
-        return ret;
+        return ret.toArray(new int[ret.size()][]);
     }
 
-    private List<Set<I>> generateCandidates(List<Set<I>> itemsetList) {
-        List<List<I>> list = new ArrayList<>(itemsetList.size());
+    private List<int[]> getNextItemsets(List<int[]> candidateList,
+                                        int[] supportCounts,
+                                        FrequentItemsetCollector<I> collector,
+                                        double minimumSupport,
+                                        int transactions,
+                                        int minimumSupportCount,
+                                        SupportThreshold threshold) {
+        List<int[]> ret = new ArrayList<>(candidateList.size());
 
-        for (Set<I> itemset : itemsetList) {
-            List<I> l = new ArrayList<>(itemset);
-            Collections.<I>sort(l, ITEM_COMPARATOR);
-            list.add(l);
-        }
+        for (int i = 0; i < candidateList.size(); ++i) {
+            int supportCount = supportCounts[i];
 
-        int listSize = list.size();
+            if (supportCount == 0) {
+                continue;
+            }
 
-        List<Set<I>> ret = new ArrayList<>(listSize);
+            int[] itemset = candidateList.get(i);
 
-        for (int i = 0; i < listSize; ++i) {
-            for (int j = i + 1; j < listSize; ++j) {
-                Set<I> candidate = tryMergeItemsets(list.get(i), list.get(j));
+            // Below the top-K threshold of the start of the level, neither
+            // this itemset nor any superset of it can make the top K.
+            if (isFrequent(supportCount, transactions, minimumSupport)
+                    && supportCount >= minimumSupportCount) {
+                collector.addFrequentItemset(itemset, supportCount);
+                ret.add(itemset);
 
-                if (candidate != null) {
-                    ret.add(candidate);
+                if (threshold != null) {
+                    threshold.offer(supportCount);
                 }
+            } else {
+                collector.addSupportCount(itemset, supportCount);
             }
         }
 
         return ret;
     }
 
-    private Set<I> tryMergeItemsets(List<I> itemset1, List<I> itemset2) {
-        int length = itemset1.size();
-
-        for (int i = 0; i < length - 1; ++i) {
-            if (!itemset1.get(i).equals(itemset2.get(i))) {
-                return null;
+    /**
+     * Hands the frequent itemsets of a level to the consumer. They are the
+     * very arrays of the candidates they come from, in the same order.
+     */
+    private static <I> void acceptLevel(FrequentItemsetConsumer<I> consumer,
+                                        List<int[]> candidateList,
+                                        int[] supportCounts,
+                                        List<int[]> frequentItemsetList) {
+        int index = 0;
+
+        for (int i = 0; 
+                i < candidateList.size() 
+                && index < frequentItemsetList.size(); 
+                ++i) {
+            if (candidateList.get(i) == frequentItemsetList.get(index)) {
+                consumer.accept(frequentItemsetList.get(index++), 
+                                supportCounts[i]);
             }
         }
+    }
 
-        if (itemset1.get(length - 1).equals(itemset2.get(length - 1))) {
-            return null;
+    private List<int[]> findFrequentItems(TransactionDatabase<I> database,
+                                          FrequentItemsetCollector<I> collector,
+                                          double minimumSupport,
+                                          SupportThreshold threshold) {
+        int frequentItems =
+                countFrequentItems(database, collector, minimumSupport);
+        List<int[]> frequentItemsetList = new ArrayList<>(frequentItems);
+
+        for (int item = 0; item < frequentItems; ++item) {
+            int supportCount = database.getItemSupportCount(item);
+            int[] itemset = { item };
+            collector.addFrequentItemset(itemset, supportCount);
+            frequentItemsetList.add(itemset);
+
+            if (threshold != null) {
+                threshold.offer(supportCount);
+            }
         }
 
-        Set<I> ret = new HashSet<>(length + 1);
+        if (threshold != null) {
+            // The items come by descending support, so the ones that reach
+            // the threshold are a prefix, which keeps their ids below the 
+            // size of the list.
+            int size = 0;
 
-        for (int i = 0; i < length - 1; ++i) {
-            ret.add(itemset1.get(i));
+            while (size < frequentItemsetList.size()
+                    && database.getItemSupportCount(size) >= threshold.get()) {
+                ++size;
+            }
+
+            frequentItemsetList = 
+                    new ArrayList<>(frequentItemsetList.subList(0, size));
         }
 
-        ret.add(itemset1.get(length - 1));
-        ret.add(itemset2.get(length - 1));
-        return ret;
+        return frequentItemsetList;
     }
 
-    private static final Comparator ITEM_COMPARATOR = new Comparator() {
+    /**
+     * Tracks the {@code k} largest support counts offered so far. Their 
+     * minimum is the support count an itemset needs to make the top k.
+     */
+    private static final class SupportThreshold {
 
-        @Override
-        public int compare(Object o1, Object o2) {
-            return ((Comparable) o1).compareTo(o2);
+        // A min-heap of the largest counts.
+        private final int[] heap;
+        private int size;
+
+        SupportThreshold(int k) {
+            this.heap = new int[k];
         }
 
-    };
+        /**
+         * Returns the support count needed to make the top k, or 0 while
+         * fewer than k counts were offered.
+         */
+        int get() {
+            return size < heap.length ? 0 : heap[0];
+        }
 
-    private List<Set<I>> findFrequentItems(List<Set<I>> itemsetList,
-                                           Map<Set<I>, Integer> supportCountMap,
-                                           double minimumSupport) {
-        Map<I, Integer> map = new HashMap<>();
+        void offer(int supportCount) {
+            if (size < heap.length) {
+                int i = size++;
 
-        // Count the support counts of each item.
-        for (Set<I> itemset : itemsetList) {
-            for (I item : itemset) {
-                Set<I> tmp = new HashSet<>(1);
-                tmp.add(item);
+                while (i > 0 && heap[(i - 1) / 2] > supportCount) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
 
-                supportCountMap.put(tmp, 
-                                    supportCountMap.getOrDefault(tmp, 0) + 1);
+                heap[i] = supportCount;
+            } else if (supportCount > heap[0]) {
+                int i = 0;
 
-                map.put(item, map.getOrDefault(item, 0) + 1);
-            }
-        }
+                while (2 * i + 1 < size) {
+                    int child = 2 * i + 1;
+
+                    if (child + 1 < size && heap[child + 1] < heap[child]) {
+                        ++child;
+                    }
 
-        List<Set<I>> frequentItemsetList = new ArrayList<>();
+                    if (heap[child] >= supportCount) {
+                        break;
+                    }
+
+                    heap[i] = heap[child];
+                    i = child;
+                }
 
-        for (Map.Entry<I, Integer> entry : map.entrySet()) {
-            if (1.0 * entry.getValue() / itemsetList.size() >= minimumSupport) {
-                Set<I> itemset = new HashSet<>(1);
-                itemset.add(entry.getKey());
-                frequentItemsetList.add(itemset);
+                heap[i] = supportCount;
             }
         }
-
-        return frequentItemsetList;
     }
 
-    private void checkSupport(double support) {
-        if (Double.isNaN(support)) {
-            throw new IllegalArgumentException("The input support is NaN.");
+    /**
+     * The time and memory a run may use.
+     */
+    private static final class Budget {
+
+        private final long deadline;
+        private final long memoryBudget;
+
+        Budget(long timeBudgetMillis, long memoryBudget) {
+            long now = System.nanoTime();
+            this.deadline = 
+                    timeBudgetMillis >= (Long.MAX_VALUE - now) / 1_000_000 ?
+                    Long.MAX_VALUE :
+                    now + timeBudgetMillis * 1_000_000;
+            this.memoryBudget = memoryBudget;
         }
 
-        if (support > 1.0) {
-            throw new IllegalArgumentException(
-                    "The input support is too large: " + support + ", " +
-                    "should be at most 1.0");
-        }
+        boolean isExhausted() {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+                return true;
+            }
 
-        if (support < 0.0) {
-            throw new IllegalArgumentException(
-                    "The input support is too small: " + support + ", " +
-                    "should be at least 0.0");
+            if (memoryBudget == Long.MAX_VALUE) {
+                return false;
+            }
+
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory() > memoryBudget;
         }
     }
 }
 
+/**
+ * Mines the frequent itemsets and association rules of a transaction file, 
+ * one transaction per line, with the items separated by spaces or tabs:
+ *
+ * <pre>
+ * java apriori.Apriori input output minimumSupport minimumConfidence 
+ *                      [engine [threads]]
+ * </pre>
+ *
+ * The engine is one of apriori, the default, eclat and fpgrowth; threads, 1
+ * by default, count the Apriori candidates and generate the rules. Without
+ * arguments, the paths and thresholds are asked for on the console.
+ *
+ * <p>The file is parsed on a thread of its own while the items are counted.
+ * Apriori writes the itemsets of each level as soon as it is counted; the 
+ * other engines write them once mining is done.
+ */
 public class Apriori {
 
+    private static final String USAGE =
+            "Usage: Apriori input output minimumSupport minimumConfidence " +
+            "[(apriori|eclat|fpgrowth) [threads]]";
+
     public static void main(String[] args) throws IOException {
-        demo();
+        if (args.length == 0) {
+            demo();
+            return;
+        }
+
+        if (args.length < 4 || args.length > 6) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        String engine = args.length > 4 ? args[4] : "apriori";
+
+        if (!engine.equals("apriori") 
+                && !engine.equals("eclat") 
+                && !engine.equals("fpgrowth")) {
+            exitWithUsage("Unknown engine: " + engine);
+        }
+
+        double minimumSupport = parseFraction(args[2], "minimum support");
+        double minimumConfidence = 
+                parseFraction(args[3], "minimum confidence");
+        int threads = 1;
+
+        if (args.length > 5) {
+            try {
+                threads = Integer.parseInt(args[5]);
+            } catch (NumberFormatException ex) {
+                exitWithUsage("The threads are not a number: " + args[5]);
+            }
+
+            if (threads < 1) {
+                exitWithUsage("The threads are too few: " + threads + ", " +
+                              "should be at least 1");
+            }
+        }
+
+        run(Paths.get(args[0]),
+            Paths.get(args[1]),
+            minimumSupport,
+            minimumConfidence,
+            engine,
+            threads);
+    }
+
+    /**
+     * Parses a support or confidence, which must be within [0, 1].
+     */
+    private static double parseFraction(String arg, String name) {
+        double value = 0.0;
+
+        try {
+            value = Double.parseDouble(arg);
+        } catch (NumberFormatException ex) {
+            exitWithUsage("The " + name + " is not a number: " + arg);
+        }
+
+        // Written so that NaN fails too.
+        if (!(value >= 0.0 && value <= 1.0)) {
+            exitWithUsage("The " + name + " is out of range: " + arg + ", " +
+                          "should be within [0, 1]");
+        }
+
+        return value;
+    }
+
+    private static void exitWithUsage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
     }
 
     private static void demo() throws IOException {
-        List<Set<String>> itemsetList = new ArrayList<>();
-        AprioriFrequentItemsetGenerator<String> generator = new AprioriFrequentItemsetGenerator<>();
-        String filename = "itemsets.txt";
         Scanner sc = new Scanner(System.in);
         System.out.print("Enter the absolute path of input file: ");
-        filename = sc.nextLine();
+        String filename = sc.nextLine();
         System.out.print("Enter the absolute path for output file to be created: ");
         String outfilename = sc.nextLine();
-        File file = new File(outfilename);
-        file.getParentFile().mkdirs();
-        PrintWriter pw = new PrintWriter(file);
-        String line;
-        float minConf, minSup;
+        double minConf, minSup;
         System.out.print("Enter minimum Support: ");
-        minSup = sc.nextFloat();
+        minSup = sc.nextDouble();
         System.out.print("Enter minimum Confidence: ");
-        minConf = sc.nextFloat();
-        FileReader fr = new FileReader(filename);
-	BufferedReader br = new BufferedReader(fr);
-	FileWriter fw = new FileWriter("apriori_Output.txt");   //Output written to this file
-	BufferedWriter bw = new BufferedWriter(fw);
-        while((line = br.readLine()) != null) {
-            line = line.trim();
-            String arr[] = line.split(Pattern.quote(" "));
-            HashSet<String> asd = new HashSet<String>();
-            for(String s : arr) {
-                
-                asd.add(s);
-            }
-            //System.out.println(asd);
-            itemsetList.add(asd);
-	}
-
-        long startTime = System.nanoTime();
-        FrequentItemsetData<String> data = generator.generate(itemsetList, minSup); //Support set here
-        long endTime = System.nanoTime();
-
-        int i = 1;
-
-        //System.out.println("--- Frequent itemsets ---");
-        pw.println("<------- Frequent itemsets ------->");    
-        
-        for (Set<String> itemset : data.getFrequentItemsetList()) {
-            pw.printf("%2d: %9s, support: %1.1f\n", i++, itemset, data.getSupport(itemset));
-        }
-
-        System.out.printf("Mined frequent itemset in %d milliseconds.\n", 
-                          (endTime - startTime) / 1_000_000);
-
-        startTime = System.nanoTime();
-        List<AssociationRule<String>> associationRuleList = 
-                new AssociationRuleGenerator<String>()
-                        .mineAssociationRules(data, minConf); //Confidence set here
-        endTime = System.nanoTime();
-
-        i = 1;
-
-        /*System.out.println();
-        System.out.println("--- Association rules ---");*/
-        pw.println();
-        pw.println("<------- Association rules ------->");
-
-        for (AssociationRule<String> rule : associationRuleList) {
-            pw.printf("%2d: %s\n", i++, rule);
-        }
-        
-        System.out.printf("Mined association rules in %d milliseconds.\n",
-                          (endTime - startTime) / 1_000_000);
-        pw.flush();
-        pw.close();
-    }
-}
\ No newline at end of file
+        minConf = sc.nextDouble();
+        run(Paths.get(filename), 
+            Paths.get(outfilename), 
+            minSup, 
+            minConf, 
+            "apriori", 
+            1);
+    }
+
+    private static void run(Path input,
+                            Path output,
+                            double minimumSupport,
+                            double minimumConfidence,
+                            String engine,
+                            int threads) throws IOException {
+        AbstractFrequentItemsetGenerator<String> generator;
+        AssociationRuleGenerator<String> ruleGenerator = 
+                new AssociationRuleGenerator<>();
+        ruleGenerator.setParallelism(threads);
+
+        switch (engine) {
+            case "eclat":
+                generator = new EclatFrequentItemsetGenerator<>();
+                break;
+
+            case "fpgrowth":
+                generator = new FPGrowthFrequentItemsetGenerator<>();
+                break;
+
+            default:
+                AprioriFrequentItemsetGenerator<String> apriori = 
+                        new AprioriFrequentItemsetGenerator<>();
+                apriori.setParallelism(threads);
+                generator = apriori;
+        }
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+
+        // The file is tokenized in place while mining, without building a
+        // List<Set<String>> first.
+        TransactionSource<String> source = 
+                new PipelinedTransactionSource<>(
+                        new MappedTransactionFile(input));
+
+        try (TextResultWriter<String> writer = 
+                new TextResultWriter<>(
+                        Files.newBufferedWriter(output, 
+                                                StandardCharsets.UTF_8))) {
+            boolean streamed = 
+                    generator instanceof AprioriFrequentItemsetGenerator;
+
+            if (streamed) {
+                ((AprioriFrequentItemsetGenerator<String>) generator)
+                        .setFrequentItemsetConsumer(writer);
+            }
+
+            long startTime = System.nanoTime();
+            FrequentItemsetData<String> data;
+
+            try {
+                data = generator.generate(source, minimumSupport);
+            } catch (UncheckedIOException ex) {
+                // Writing a streamed itemset failed.
+                throw ex.getCause();
+            }
+
+            // Without transactions, nothing was streamed.
+            if (!streamed || data == null) {
+                writer.writeItemsets(data);
+            }
+
+            long endTime = System.nanoTime();
+            System.out.printf("Mined frequent itemset in %d milliseconds.\n", 
+                              (endTime - startTime) / 1_000_000);
+
+            startTime = System.nanoTime();
+            List<AssociationRule<String>> associationRuleList = 
+                    data == null ?
+                    Collections.emptyList() :
+                    ruleGenerator.mineAssociationRules(data, 
+                                                       minimumConfidence);
+            writer.writeRules(associationRuleList);
+            endTime = System.nanoTime();
+
+            System.out.printf("Mined association rules in %d milliseconds.\n",
+                              (endTime - startTime) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package apriori;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Generates the candidate (k + 1)-itemsets out of the frequent k-itemsets, the
+ * Apriori way. Itemsets are sorted arrays of item ids, and lists of itemsets
+ * are kept in lexicographic order, so the itemsets sharing a (k - 1)-prefix
+ * are contiguous. Only itemsets within such a group are joined, and a joined
+ * candidate is kept only if all of its k-subsets are frequent.
+ */
+final class CandidateGenerator {
+
+    /**
+     * Orders itemsets of equal size lexicographically by item id.
+     */
+    static final Comparator<int[]> ITEMSET_COMPARATOR = (a, b) -> {
+        for (int i = 0; i < a.length; ++i) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+
+        return 0;
+    };
+
+    private CandidateGenerator() {}
+
+    /**
+     * Returns the candidates built from the input frequent itemsets, in
+     * lexicographic order.
+     *
+     * @param itemsetList the frequent k-itemsets, all of the same size, in
+     *                    lexicographic order.
+     * @return the candidate (k + 1)-itemsets.
+     */
+    static List<int[]> generateCandidates(List<int[]> itemsetList) {
+        return generateCandidates(itemsetList, null);
+    }
+
+    /**
+     * Returns the candidates built from the input frequent itemsets, and
+     * counts the joined itemsets that the subset test dropped.
+     *
+     * @param itemsetList   the frequent k-itemsets, all of the same size, in
+     *                      lexicographic order.
+     * @param prunedCounter if not null, its first element is incremented for
+     *                      every pruned candidate.
+     * @return the candidate (k + 1)-itemsets.
+     */
+    static List<int[]> generateCandidates(List<int[]> itemsetList,
+                                          int[] prunedCounter) {
+        List<int[]> ret = new ArrayList<>();
+        int listSize = itemsetList.size();
+
+        if (listSize < 2) {
+            return ret;
+        }
+
+        int k = itemsetList.get(0).length;
+        int groupStart = 0;
+
+        while (groupStart < listSize) {
+            // Find the end of the group sharing the (k - 1)-prefix of the
+            // itemset at 'groupStart'.
+            int[] first = itemsetList.get(groupStart);
+            int groupEnd = groupStart + 1;
+
+            while (groupEnd < listSize
+                    && samePrefix(first, itemsetList.get(groupEnd), k - 1)) {
+                ++groupEnd;
+            }
+
+            for (int i = groupStart; i < groupEnd; ++i) {
+                int[] itemset1 = itemsetList.get(i);
+
+                for (int j = i + 1; j < groupEnd; ++j) {
+                    int[] itemset2 = itemsetList.get(j);
+                    int[] candidate = new int[k + 1];
+                    System.arraycopy(itemset1, 0, candidate, 0, k);
+                    candidate[k] = itemset2[k - 1];
+
+                    if (allSubsetsFrequent(candidate, itemsetList)) {
+                        ret.add(candidate);
+                    } else if (prunedCounter != null) {
+                        ++prunedCounter[0];
+                    }
+                }
+            }
+
+            groupStart = groupEnd;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Tells whether every k-subset of the input (k + 1)-candidate is in the
+     * list of frequent k-itemsets. The two subsets that dropped one of the
+     * last two items are the ones the candidate was joined from, so they are
+     * not checked again.
+     */
+    static boolean allSubsetsFrequent(int[] candidate,
+                                      List<int[]> itemsetList) {
+        for (int skip = 0; skip < candidate.length - 2; ++skip) {
+            if (indexOfSubset(itemsetList, candidate, skip) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Binary searches the lexicographically sorted itemset list for the
+     * subset of {@code candidate} without its item at index {@code skip},
+     * without materializing the subset.
+     *
+     * @return the index of the subset in the list, or -1 if it is not there.
+     */
+    static int indexOfSubset(List<int[]> itemsetList,
+                             int[] candidate,
+                             int skip) {
+        int low = 0;
+        int high = itemsetList.size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareToSubset(itemsetList.get(mid), candidate, skip);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int compareToSubset(int[] itemset,
+                                       int[] candidate,
+                                       int skip) {
+        for (int i = 0, j = 0; i < itemset.length; ++i, ++j) {
+            if (j == skip) {
+                ++j;
+            }
+
+            if (itemset[i] != candidate[j]) {
+                return Integer.compare(itemset[i], candidate[j]);
+            }
+        }
+
+        return 0;
+    }
+
+    private static boolean samePrefix(int[] itemset1,
+                                      int[] itemset2,
+                                      int length) {
+        for (int i = 0; i < length; ++i) {
+            if (itemset1[i] != itemset2[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+package apriori;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A prefix trie over the candidate itemsets of one Apriori level. Each
+ * candidate is inserted as its sorted array of item ids, so every 
+ * root-to-leaf path spells out exactly one candidate. Counting a transaction
+ * walks only the branches whose items the transaction actually contains, 
+ * instead of testing every candidate with {@code containsAll}.
+ */
+class CandidateTrie {
+
+    private static final class Node {
+
+        // The sorted item ids leading to the children of this node.
+        int[] items = new int[2];
+        Node[] children = new Node[2];
+        int childCount;
+
+        // The index of the candidate ending at this node, or -1 for inner
+        // nodes.
+        int candidateIndex = -1;
+
+        Node getOrAddChild(int item) {
+            int index = Arrays.binarySearch(items, 0, childCount, item);
+
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+
+            if (childCount == items.length) {
+                items = Arrays.copyOf(items, 2 * childCount);
+                children = Arrays.copyOf(children, 2 * childCount);
+            }
+
+            System.arraycopy(items, index, items, index + 1, 
+                             childCount - index);
+            System.arraycopy(children, index, children, index + 1, 
+                             childCount - index);
+
+            Node child = new Node();
+            items[index] = item;
+            children[index] = child;
+            ++childCount;
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+    private final int itemsetSize;
+    private final int[] counts;
+    private final HitConsumer counter;
+
+    /**
+     * Builds the trie for the given candidates. All candidates must have the
+     * same size, and their item ids must be sorted in ascending order.
+     *
+     * @param candidateList the candidates of the current level.
+     */
+    CandidateTrie(List<int[]> candidateList) {
+        this.itemsetSize = candidateList.isEmpty() ?
+                           0 :
+                           candidateList.get(0).length;
+        this.counts = new int[candidateList.size()];
+        this.counter = (candidateIndex, weight) ->
+                counts[candidateIndex] += weight;
+
+        for (int i = 0; i < candidateList.size(); ++i) {
+            Node node = root;
+
+            for (int item : candidateList.get(i)) {
+                node = node.getOrAddChild(item);
+            }
+
+            node.candidateIndex = i;
+        }
+    }
+
+    /**
+     * Receives the candidates contained in a counted transaction.
+     */
+    @FunctionalInterface
+    interface HitConsumer {
+
+        /**
+         * Accepts the candidate at the given index of the list the trie was
+         * built from, contained in a transaction of the given weight.
+         */
+        void accept(int candidateIndex, int weight);
+    }
+
+    /**
+     * Passes every candidate contained in the transaction made of the
+     * entries {@code [from, to)} of the input array, which must be sorted,
+     * to the consumer. This leaves the counts of this trie untouched, so that
+     * several threads may count into their own arrays concurrently, and
+     * merge them later via {@link #addSupportCounts(int[])}.
+     *
+     * @param items    the sorted item ids.
+     * @param from     the index of the first item of the transaction.
+     * @param to       the index past the last item of the transaction.
+     * @param weight   the number of transactions the items stand for.
+     * @param consumer receives the contained candidates.
+     */
+    void count(int[] items, int from, int to, int weight, HitConsumer consumer) {
+        if (counts.length == 0 || to - from < itemsetSize) {
+            return;
+        }
+
+        count(root, items, from, to, 0, weight, consumer);
+    }
+
+    /**
+     * Adds {@code weight} to the support count of every candidate contained
+     * in the transaction made of the entries {@code [from, to)} of the input
+     * array, which must be sorted.
+     */
+    void count(int[] items, int from, int to, int weight) {
+        count(items, from, to, weight, counter);
+    }
+
+    /**
+     * Returns the support counts of all candidates, indexed like the list this
+     * trie was built from. The array is not a copy.
+     */
+    int[] getSupportCounts() {
+        return counts;
+    }
+
+    /**
+     * Adds the input counts, indexed by candidate, to the counts of this trie.
+     */
+    void addSupportCounts(int[] counterArray) {
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] += counterArray[i];
+        }
+    }
+
+    /**
+     * Returns the number of candidates in this trie.
+     */
+    int size() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the support count of the candidate at the given index of the
+     * list this trie was built from.
+     */
+    int getSupportCount(int candidateIndex) {
+        return counts[candidateIndex];
+    }
+
+    private void count(Node node, 
+                       int[] transaction, 
+                       int start, 
+                       int end,
+                       int depth,
+                       int weight,
+                       HitConsumer consumer) {
+        if (depth == itemsetSize) {
+            consumer.accept(node.candidateIndex, weight);
+            return;
+        }
+
+        // Leave enough items in the transaction to complete a candidate.
+        int last = end - (itemsetSize - depth);
+        int[] items = node.items;
+        int childCount = node.childCount;
+        int i = start;
+        int j = 0;
+
+        // Both the transaction and the child items are sorted, so a single
+        // merge pass finds the children the transaction contains.
+        while (i <= last && j < childCount) {
+            if (transaction[i] < items[j]) {
+                ++i;
+            } else if (transaction[i] > items[j]) {
+                ++j;
+            } else {
+                count(node.children[j], 
+                      transaction, 
+                      i + 1, 
+                      end,
+                      depth + 1, 
+                      weight,
+                      consumer);
+                ++i;
+                ++j;
+            }
+        }
+    }
+}
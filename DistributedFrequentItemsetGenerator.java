@@ -0,0 +1,290 @@
+package apriori;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Mines a transaction file with several worker processes, using the SON
+ * algorithm of Savasere, Omiecinski and Navathe. Worker {@code w} of
+ * {@code n} owns the transactions whose index is {@code w} modulo {@code n}.
+ * In the first phase, each worker mines its shard with Apriori at the full
+ * relative minimum support; an itemset frequent in the whole file is frequent
+ * in at least one shard, so the union of the local results holds every
+ * frequent itemset. In the second phase, each worker counts that union in its
+ * shard, and the coordinator adds up the counts.
+ *
+ * <p>The coordinator and the workers talk through files in a work directory:
+ * itemsets are written one per line, with the items separated by spaces, just
+ * like the transactions. Items must therefore not be empty or contain
+ * whitespace, and transactions given as a source are rejected if they do. The
+ * workers are started by a {@link WorkerRunner}, which by default launches
+ * one JVM per worker on this machine.
+ */
+class DistributedFrequentItemsetGenerator
+        implements FrequentItemsetGenerator<String> {
+
+    /**
+     * Starts the workers of a phase, and waits for all of them to finish.
+     */
+    interface WorkerRunner {
+
+        /**
+         * Runs one worker per element of the input list, each with the
+         * command line arguments of {@link DistributedWorker#main(String[])}
+         * that the element holds.
+         *
+         * @throws IOException if a worker could not be started, or failed.
+         */
+        void run(List<List<String>> workerArgumentList) throws IOException;
+    }
+
+    private final int workers;
+    private final WorkerRunner runner;
+
+    /**
+     * Runs the workers as JVMs on this machine.
+     *
+     * @param workers the number of workers, and shards.
+     */
+    DistributedFrequentItemsetGenerator(int workers) {
+        this(workers, new LocalWorkerRunner());
+    }
+
+    /**
+     * @param workers the number of workers, and shards.
+     * @param runner  the runner starting the workers.
+     */
+    DistributedFrequentItemsetGenerator(int workers, WorkerRunner runner) {
+        if (workers < 1) {
+            throw new IllegalArgumentException(
+                    "The number of workers is too small: " + workers + ", " +
+                    "should be at least 1");
+        }
+
+        this.workers = workers;
+        this.runner = Objects.requireNonNull(runner, "The runner is null.");
+    }
+
+    @Override
+    public FrequentItemsetData<String>
+        generate(List<Set<String>> transactionList, double minimumSupport) {
+        Objects.requireNonNull(transactionList, "The itemset list is empty.");
+
+        try {
+            return generate(new ListTransactionSource<>(transactionList),
+                            minimumSupport);
+        } catch (IOException ex) {
+            // The list never throws, but the files and workers may.
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the transactions of the source to a temporary file, which the
+     * workers then read. An empty transaction is an empty line. Items may
+     * not be empty or contain whitespace, since the file could not tell them
+     * apart.
+     *
+     * @throws IllegalArgumentException if an item is empty or contains
+     *                                  whitespace.
+     */
+    @Override
+    public FrequentItemsetData<String>
+        generate(TransactionSource<String> source, double minimumSupport)
+            throws IOException {
+        Objects.requireNonNull(source, "The transaction source is null.");
+        AbstractFrequentItemsetGenerator.checkSupport(minimumSupport);
+        Path input = Files.createTempFile("apriori-transactions", ".txt");
+
+        try {
+            try (BufferedWriter writer =
+                    Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+                ItemDictionary<String> dictionary = source.getDictionary();
+                IOException[] failure = { null };
+
+                source.scan((items, length) -> {
+                    if (failure[0] != null) {
+                        return;
+                    }
+
+                    try {
+                        for (int i = 0; i < length; ++i) {
+                            if (i > 0) {
+                                writer.write(' ');
+                            }
+
+                            writer.write(
+                                    checkItem(dictionary.getItem(items[i])));
+                        }
+
+                        writer.newLine();
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                    }
+                });
+
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+
+            return generate(input, minimumSupport);
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    /**
+     * Mines the input transaction file, one transaction per line, with the
+     * items separated by spaces or tabs.
+     *
+     * @return the frequent itemsets, or null if the file holds no
+     *         transactions.
+     */
+    public FrequentItemsetData<String> generate(Path input,
+                                                double minimumSupport)
+            throws IOException {
+        Objects.requireNonNull(input, "The input file is null.");
+        AbstractFrequentItemsetGenerator.checkSupport(minimumSupport);
+        Path workDirectory = Files.createTempDirectory("apriori-son");
+
+        try {
+            return generate(input, minimumSupport, workDirectory);
+        } finally {
+            try (Stream<Path> stream = Files.walk(workDirectory)) {
+                for (Path path : (Iterable<Path>) stream.sorted(
+                        Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private FrequentItemsetData<String> generate(Path input,
+                                                 double minimumSupport,
+                                                 Path workDirectory)
+            throws IOException {
+        String absoluteInput = input.toAbsolutePath().toString();
+        String support = Double.toString(minimumSupport);
+
+        // Phase one: mine each shard locally.
+        List<List<String>> argumentList = new ArrayList<>(workers);
+
+        for (int w = 0; w < workers; ++w) {
+            argumentList.add(Arrays.asList(
+                    DistributedWorker.MINE,
+                    absoluteInput,
+                    Integer.toString(w),
+                    Integer.toString(workers),
+                    support,
+                    localItemsetFile(workDirectory, w).toString()));
+        }
+
+        runner.run(argumentList);
+
+        Set<Set<String>> candidateSet = new LinkedHashSet<>();
+
+        for (int w = 0; w < workers; ++w) {
+            candidateSet.addAll(
+                    DistributedWorker.readItemsets(
+                            localItemsetFile(workDirectory, w)));
+        }
+
+        List<Set<String>> candidateList = new ArrayList<>(candidateSet);
+        Path candidateFile = workDirectory.resolve("candidates.txt");
+        DistributedWorker.writeItemsets(candidateFile, candidateList);
+
+        // Phase two: count the union of the local results in every shard.
+        argumentList.clear();
+
+        for (int w = 0; w < workers; ++w) {
+            argumentList.add(Arrays.asList(
+                    DistributedWorker.COUNT,
+                    absoluteInput,
+                    Integer.toString(w),
+                    Integer.toString(workers),
+                    candidateFile.toString(),
+                    countFile(workDirectory, w).toString()));
+        }
+
+        runner.run(argumentList);
+
+        int transactions = 0;
+        int[] supportCounts = new int[candidateList.size()];
+
+        for (int w = 0; w < workers; ++w) {
+            try (BufferedReader reader =
+                    Files.newBufferedReader(countFile(workDirectory, w),
+                                            StandardCharsets.UTF_8)) {
+                transactions += Integer.parseInt(reader.readLine());
+
+                for (int c = 0; c < supportCounts.length; ++c) {
+                    supportCounts[c] += Integer.parseInt(reader.readLine());
+                }
+            }
+        }
+
+        if (transactions == 0) {
+            return null;
+        }
+
+        ItemDictionary<String> dictionary = new ItemDictionary<>();
+        FrequentItemsetCollector<String> collector =
+                new FrequentItemsetCollector<>(dictionary);
+
+        for (int c = 0; c < supportCounts.length; ++c) {
+            int[] itemset = new int[candidateList.get(c).size()];
+            int index = 0;
+
+            for (String item : candidateList.get(c)) {
+                itemset[index++] = dictionary.intern(item);
+            }
+
+            if (AbstractFrequentItemsetGenerator.isFrequent(supportCounts[c],
+                                                            transactions,
+                                                            minimumSupport)) {
+                collector.addFrequentItemset(itemset, supportCounts[c]);
+            } else {
+                collector.addSupportCount(itemset, supportCounts[c]);
+            }
+        }
+
+        return collector.toFrequentItemsetData(minimumSupport, transactions);
+    }
+
+    private static String checkItem(String item) {
+        if (item.isEmpty()) {
+            throw new IllegalArgumentException("An item is empty.");
+        }
+
+        for (int i = 0; i < item.length(); ++i) {
+            if (Character.isWhitespace(item.charAt(i))) {
+                throw new IllegalArgumentException(
+                        "The item contains whitespace: \"" + item + "\"");
+            }
+        }
+
+        return item;
+    }
+
+    private static Path localItemsetFile(Path workDirectory, int worker) {
+        return workDirectory.resolve("local-" + worker + ".txt");
+    }
+
+    private static Path countFile(Path workDirectory, int worker) {
+        return workDirectory.resolve("counts-" + worker + ".txt");
+    }
+}
@@ -0,0 +1,212 @@
+package apriori;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A worker process of {@link DistributedFrequentItemsetGenerator}. It runs
+ * one phase on one shard of a transaction file, and writes its result to a
+ * file:
+ *
+ * <pre>
+ * mine  input worker workers minimumSupport output
+ * count input worker workers candidateFile  output
+ * </pre>
+ *
+ * {@code mine} writes the frequent itemsets of the shard, one per line.
+ * {@code count} writes the number of transactions in the shard, and then the
+ * support count of each itemset of the candidate file, one per line, in the
+ * order of the file.
+ */
+final class DistributedWorker {
+
+    static final String MINE = "mine";
+    static final String COUNT = "count";
+
+    private DistributedWorker() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6) {
+            System.err.println(
+                    "Usage: DistributedWorker (mine|count) input worker " +
+                    "workers (minimumSupport|candidateFile) output");
+            System.exit(2);
+        }
+
+        Path input = Paths.get(args[1]);
+        int worker = Integer.parseInt(args[2]);
+        int workers = Integer.parseInt(args[3]);
+        Path output = Paths.get(args[5]);
+        TransactionSource<String> shard =
+                new ShardSource(new MappedTransactionFile(input),
+                                worker,
+                                workers);
+
+        switch (args[0]) {
+            case MINE:
+                mine(shard, Double.parseDouble(args[4]), output);
+                break;
+
+            case COUNT:
+                count(shard, Paths.get(args[4]), output);
+                break;
+
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(2);
+        }
+    }
+
+    private static void mine(TransactionSource<String> shard,
+                             double minimumSupport,
+                             Path output) throws IOException {
+        FrequentItemsetData<String> data =
+                new AprioriFrequentItemsetGenerator<String>()
+                        .generate(shard, minimumSupport);
+
+        // An empty shard has no frequent itemsets.
+        writeItemsets(output,
+                      data == null ?
+                      Collections.emptyList() :
+                      data.getFrequentItemsetList());
+    }
+
+    private static void count(TransactionSource<String> shard,
+                              Path candidateFile,
+                              Path output) throws IOException {
+        TransactionDatabase<String> database =
+                TransactionDatabase.encode(shard).collapseDuplicates();
+        int[][] transactions = database.getTransactions();
+        int[] weights = database.getWeights();
+        ItemDictionary<String> dictionary = database.getDictionary();
+        List<Set<String>> candidateList = readItemsets(candidateFile);
+        int[] supportCounts = new int[candidateList.size()];
+
+        // A candidate trie holds itemsets of one size only. The candidates
+        // with an item that does not occur in the shard are left at zero.
+        Map<Integer, List<int[]>> candidateMap = new HashMap<>();
+        Map<Integer, List<Integer>> indexMap = new HashMap<>();
+
+        for (int c = 0; c < candidateList.size(); ++c) {
+            int[] itemset = dictionary.encode(candidateList.get(c));
+
+            if (itemset != null) {
+                candidateMap.computeIfAbsent(itemset.length,
+                                             k -> new ArrayList<>())
+                            .add(itemset);
+                indexMap.computeIfAbsent(itemset.length,
+                                         k -> new ArrayList<>())
+                        .add(c);
+            }
+        }
+
+        for (Map.Entry<Integer, List<int[]>> entry
+                : candidateMap.entrySet()) {
+            CandidateTrie candidateTrie = new CandidateTrie(entry.getValue());
+
+            for (int t = 0; t < transactions.length; ++t) {
+                candidateTrie.count(transactions[t],
+                                    0,
+                                    transactions[t].length,
+                                    weights[t]);
+            }
+
+            List<Integer> indexList = indexMap.get(entry.getKey());
+
+            for (int i = 0; i < indexList.size(); ++i) {
+                supportCounts[indexList.get(i)] =
+                        candidateTrie.getSupportCount(i);
+            }
+        }
+
+        try (BufferedWriter writer =
+                Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write(Integer.toString(database.getTransactionNumber()));
+            writer.newLine();
+
+            for (int supportCount : supportCounts) {
+                writer.write(Integer.toString(supportCount));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes the itemsets one per line, with the items separated by spaces.
+     */
+    static void writeItemsets(Path path, List<Set<String>> itemsetList)
+            throws IOException {
+        try (BufferedWriter writer =
+                Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Set<String> itemset : itemsetList) {
+                writer.write(String.join(" ", itemset));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads the itemsets written by {@link #writeItemsets(Path, List)}, in
+     * order.
+     */
+    static List<Set<String>> readItemsets(Path path) throws IOException {
+        List<Set<String>> ret = new ArrayList<>();
+
+        if (Files.size(path) == 0) {
+            return ret;
+        }
+
+        MappedTransactionFile file = new MappedTransactionFile(path);
+        file.scan((items, length) ->
+                ret.add(file.getDictionary()
+                            .decode(Arrays.copyOf(items, length))));
+        return ret;
+    }
+
+    /**
+     * Serves the transactions of a source whose index is {@code worker}
+     * modulo {@code workers}.
+     */
+    private static final class ShardSource
+            implements TransactionSource<String> {
+
+        private final TransactionSource<String> source;
+        private final int worker;
+        private final int workers;
+
+        ShardSource(TransactionSource<String> source,
+                    int worker,
+                    int workers) {
+            this.source = source;
+            this.worker = worker;
+            this.workers = workers;
+        }
+
+        @Override
+        public void scan(TransactionConsumer consumer) throws IOException {
+            int[] index = { 0 };
+
+            source.scan((items, length) -> {
+                if (index[0]++ % workers == worker) {
+                    consumer.accept(items, length);
+                }
+            });
+        }
+
+        @Override
+        public ItemDictionary<String> getDictionary() {
+            return source.getDictionary();
+        }
+    }
+}
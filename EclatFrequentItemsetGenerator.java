@@ -0,0 +1,320 @@
+package apriori;
+
+import java.util.Arrays;
+
+/**
+ * Mines frequent itemsets over the vertical layout of the data, in the style
+ * of Eclat. Each frequent item is stored as the set of the ids of the
+ * transactions containing it, and the support of a larger itemset is the
+ * size of the intersection of its items' sets, so the transactions are never
+ * rescanned. A dense set is a bitset, and a sparse one is a sorted array of
+ * ids (a tid-list) of at most a quarter of the bitset's memory; an
+ * intersection is as sparse as its sparsest operand at least, so the sets
+ * only get sparser down the search. A database of weighted transactions
+ * adds up the weights of the members instead. The search goes depth-first
+ * over itemsets sharing a prefix, which keeps only one set per item of the
+ * current path and its siblings in memory.
+ *
+ * @param <I> the actual item type.
+ */
+class EclatFrequentItemsetGenerator<I>
+        extends AbstractFrequentItemsetGenerator<I> {
+
+    @Override
+    FrequentItemsetData<I> generate(TransactionDatabase<I> database,
+                                    double minimumSupport) {
+        int transactions = database.getTransactionNumber();
+        FrequentItemsetCollector<I> collector = newCollector(database);
+
+        // The item ids are sorted by descending support, so the frequent items
+        // are exactly the ids below 'frequentItems'.
+        int frequentItems =
+                countFrequentItems(database, collector, minimumSupport);
+        int[][] transactionArray = database.getTransactions();
+        int words = (transactionArray.length + 63) >>> 6;
+
+        // Size the set of each frequent item before filling it. The support
+        // counts of a weighted database are no transaction numbers.
+        int[] sizes = new int[frequentItems];
+
+        for (int[] transaction : transactionArray) {
+            int length = frequentPrefixLength(transaction, frequentItems);
+
+            for (int i = 0; i < length; ++i) {
+                ++sizes[transaction[i]];
+            }
+        }
+
+        TidSet[] tidSets = new TidSet[frequentItems];
+
+        for (int item = 0; item < frequentItems; ++item) {
+            tidSets[item] = isSparse(sizes[item], words) ?
+                            new TidSet(null, new int[sizes[item]]) :
+                            new TidSet(new long[words], null);
+            sizes[item] = 0;
+        }
+
+        for (int tid = 0; tid < transactionArray.length; ++tid) {
+            int[] transaction = transactionArray[tid];
+            int length = frequentPrefixLength(transaction, frequentItems);
+
+            for (int i = 0; i < length; ++i) {
+                int item = transaction[i];
+                TidSet tidSet = tidSets[item];
+
+                if (tidSet.bits != null) {
+                    tidSet.bits[tid >>> 6] |= 1L << tid;
+                } else {
+                    tidSet.tids[sizes[item]++] = tid;
+                }
+            }
+        }
+
+        // Extend the rarest items first: their sets are the sparsest, so
+        // the equivalence classes under them stay small.
+        int[] itemArray = new int[frequentItems];
+        TidSet[] itemTidSets = new TidSet[frequentItems];
+        int[] supportCountArray = new int[frequentItems];
+
+        for (int i = 0; i < frequentItems; ++i) {
+            int item = frequentItems - 1 - i;
+            itemArray[i] = item;
+            itemTidSets[i] = tidSets[item];
+            supportCountArray[i] = database.getItemSupportCount(item);
+        }
+
+        // Unit weights need no lookup; the population count is the support.
+        int[] weights = database.getTransactionNumber() 
+                        == transactionArray.length ?
+                        null :
+                        database.getWeights();
+
+        new Search(collector, transactions, minimumSupport, words, weights)
+                .mine(new int[0], itemArray, itemTidSets, supportCountArray);
+
+        return collector.toFrequentItemsetData(minimumSupport, transactions);
+    }
+
+    /**
+     * Tells whether a set of the input size is kept as a tid-list rather
+     * than a bitset of the input number of words. Merging tid-lists costs
+     * more per id than and-ing bitsets per word, so a tid-list only pays off
+     * once it is a few times smaller than the bitset.
+     */
+    private static boolean isSparse(int size, int words) {
+        return size < words / 2;
+    }
+
+    /**
+     * The ids of the transactions containing an itemset, as either a bitset
+     * or a sorted tid-list.
+     */
+    private static final class TidSet {
+
+        // Exactly one of the two is set.
+        final long[] bits;
+        final int[] tids;
+
+        TidSet(long[] bits, int[] tids) {
+            this.bits = bits;
+            this.tids = tids;
+        }
+    }
+
+    private final class Search {
+
+        private final FrequentItemsetCollector<I> collector;
+        private final int transactions;
+        private final double minimumSupport;
+        private final int[] weights;
+
+        // The last intersection: a bitset and the number of its members, or
+        // a tid-list of 'scratchSize' ids, as 'scratchIsList' tells.
+        private final long[] scratch;
+        private int[] scratchTids = new int[16];
+        private int scratchSize;
+        private boolean scratchIsList;
+
+        Search(FrequentItemsetCollector<I> collector,
+               int transactions,
+               double minimumSupport,
+               int words,
+               int[] weights) {
+            this.collector = collector;
+            this.transactions = transactions;
+            this.minimumSupport = minimumSupport;
+            this.scratch = new long[words];
+            this.weights = weights;
+        }
+
+        /**
+         * Emits every frequent extension of {@code prefix} by one of the
+         * items in {@code itemArray}, and recurses into the equivalence class
+         * of each of them.
+         */
+        void mine(int[] prefix,
+                  int[] itemArray,
+                  TidSet[] tidSets,
+                  int[] supportCountArray) {
+            int size = itemArray.length;
+
+            for (int i = 0; i < size; ++i) {
+                int[] itemset = Arrays.copyOf(prefix, prefix.length + 1);
+                itemset[prefix.length] = itemArray[i];
+                collector.addFrequentItemset(itemset, supportCountArray[i]);
+
+                if (itemset.length >= getMaximumItemsetLength()) {
+                    continue;
+                }
+
+                // Build the equivalence class of 'itemset': all items after
+                // 'i' whose intersection with it is still frequent.
+                int[] nextItemArray = new int[size - i - 1];
+                TidSet[] nextTidSets = new TidSet[size - i - 1];
+                int[] nextSupportCountArray = new int[size - i - 1];
+                int nextSize = 0;
+
+                for (int j = i + 1; j < size; ++j) {
+                    int supportCount = intersect(tidSets[i], tidSets[j]);
+
+                    if (isFrequent(supportCount,
+                                   transactions,
+                                   minimumSupport)) {
+                        nextItemArray[nextSize] = itemArray[j];
+                        nextTidSets[nextSize] = copyScratch();
+                        nextSupportCountArray[nextSize] = supportCount;
+                        ++nextSize;
+                    }
+                }
+
+                if (nextSize > 0) {
+                    mine(itemset,
+                         Arrays.copyOf(nextItemArray, nextSize),
+                         Arrays.copyOf(nextTidSets, nextSize),
+                         Arrays.copyOf(nextSupportCountArray, nextSize));
+                }
+            }
+        }
+
+        /**
+         * Stores the intersection of the two sets in the scratch, and returns
+         * the support count of the transactions in it.
+         */
+        private int intersect(TidSet tidSet1, TidSet tidSet2) {
+            if (tidSet1.bits != null && tidSet2.bits != null) {
+                return intersect(tidSet1.bits, tidSet2.bits);
+            }
+
+            if (tidSet1.bits != null) {
+                return intersect(tidSet2.tids, tidSet1.bits);
+            }
+
+            if (tidSet2.bits != null) {
+                return intersect(tidSet1.tids, tidSet2.bits);
+            }
+
+            return intersect(tidSet1.tids, tidSet2.tids);
+        }
+
+        private int intersect(long[] bitset1, long[] bitset2) {
+            int supportCount = 0;
+            int size = 0;
+
+            for (int w = 0; w < scratch.length; ++w) {
+                long word = bitset1[w] & bitset2[w];
+                scratch[w] = word;
+                size += Long.bitCount(word);
+
+                if (weights != null) {
+                    for (long rest = word; rest != 0; rest &= rest - 1) {
+                        supportCount += weights[(w << 6) 
+                                + Long.numberOfTrailingZeros(rest)];
+                    }
+                }
+            }
+
+            scratchSize = size;
+            scratchIsList = false;
+            return weights == null ? size : supportCount;
+        }
+
+        private int intersect(int[] tids, long[] bitset) {
+            reserveScratchTids(tids.length);
+            int supportCount = 0;
+            int size = 0;
+
+            for (int tid : tids) {
+                if ((bitset[tid >>> 6] & 1L << tid) != 0) {
+                    scratchTids[size++] = tid;
+                    supportCount += weights == null ? 1 : weights[tid];
+                }
+            }
+
+            scratchSize = size;
+            scratchIsList = true;
+            return supportCount;
+        }
+
+        private int intersect(int[] tids1, int[] tids2) {
+            reserveScratchTids(Math.min(tids1.length, tids2.length));
+            int supportCount = 0;
+            int size = 0;
+            int i = 0;
+            int j = 0;
+
+            // Advancing both sides by comparison results, rather than
+            // branching on them, keeps the merge free of mispredictions.
+            while (i < tids1.length && j < tids2.length) {
+                int tid1 = tids1[i];
+                int tid2 = tids2[j];
+                scratchTids[size] = tid1;
+
+                if (tid1 == tid2) {
+                    ++size;
+                    supportCount += weights == null ? 1 : weights[tid1];
+                }
+
+                i += tid1 <= tid2 ? 1 : 0;
+                j += tid1 >= tid2 ? 1 : 0;
+            }
+
+            scratchSize = size;
+            scratchIsList = true;
+            return supportCount;
+        }
+
+        private void reserveScratchTids(int capacity) {
+            if (scratchTids.length < capacity) {
+                scratchTids = new int[Math.max(capacity,
+                                               2 * scratchTids.length)];
+            }
+        }
+
+        /**
+         * Copies the last intersection out of the scratch, turning a sparse
+         * bitset into a tid-list.
+         */
+        private TidSet copyScratch() {
+            if (scratchIsList) {
+                return new TidSet(null,
+                                  Arrays.copyOf(scratchTids, scratchSize));
+            }
+
+            if (!isSparse(scratchSize, scratch.length)) {
+                return new TidSet(scratch.clone(), null);
+            }
+
+            int[] tids = new int[scratchSize];
+            int size = 0;
+
+            for (int w = 0; w < scratch.length; ++w) {
+                for (long rest = scratch[w]; rest != 0; rest &= rest - 1) {
+                    tids[size++] = (w << 6) 
+                                 + Long.numberOfTrailingZeros(rest);
+                }
+            }
+
+            return new TidSet(null, tids);
+        }
+    }
+}
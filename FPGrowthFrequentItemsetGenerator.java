@@ -0,0 +1,222 @@
+package apriori;
+
+import java.util.Arrays;
+
+/**
+ * Mines frequent itemsets with FP-Growth. The data is read twice: once to
+ * count the items, and once to insert every transaction, restricted to its
+ * frequent items, into a compressed prefix tree (the FP-tree). The frequent
+ * itemsets are then grown from the tree by recursively building conditional
+ * FP-trees, without generating any candidates.
+ *
+ * @param <I> the actual item type.
+ */
+class FPGrowthFrequentItemsetGenerator<I>
+        extends AbstractFrequentItemsetGenerator<I> {
+
+    @Override
+    FrequentItemsetData<I> generate(TransactionDatabase<I> database,
+                                    double minimumSupport) {
+        // Encoding the database counted the items and assigned the ids by
+        // descending support; that is the first pass. Each encoded 
+        // transaction is sorted by id, that is, by descending support, which 
+        // is exactly the order items are inserted into the FP-tree in.
+        int transactions = database.getTransactionNumber();
+        FrequentItemsetCollector<I> collector = newCollector(database);
+
+        // The frequent items are exactly the ids below 'frequentItems'.
+        int frequentItems =
+                countFrequentItems(database, collector, minimumSupport);
+
+        // The second pass builds the FP-tree.
+        Tree tree = new Tree(frequentItems);
+
+        int[][] transactionArray = database.getTransactions();
+        int[] weights = database.getWeights();
+
+        for (int i = 0; i < transactionArray.length; ++i) {
+            int[] transaction = transactionArray[i];
+            tree.insert(transaction,
+                        frequentPrefixLength(transaction, frequentItems),
+                        weights[i]);
+        }
+
+        mine(tree, new int[0], collector, transactions, minimumSupport);
+        return collector.toFrequentItemsetData(minimumSupport, transactions);
+    }
+
+    /**
+     * Emits every frequent itemset that consists of {@code suffix} plus at
+     * least one item of the input tree.
+     */
+    private void mine(Tree tree,
+                      int[] suffix,
+                      FrequentItemsetCollector<I> collector,
+                      int transactions,
+                      double minimumSupport) {
+        // Start from the least frequent item, whose conditional pattern base
+        // is the smallest.
+        for (int item = tree.itemLimit - 1; item >= 0; --item) {
+            int supportCount = tree.supportCounts[item];
+
+            if (!isFrequent(supportCount, transactions, minimumSupport)) {
+                continue;
+            }
+
+            int[] itemset = new int[suffix.length + 1];
+            itemset[0] = item;
+            System.arraycopy(suffix, 0, itemset, 1, suffix.length);
+            collector.addFrequentItemset(itemset, supportCount);
+
+            if (itemset.length >= getMaximumItemsetLength()) {
+                continue;
+            }
+
+            // Count the items on the prefix paths of 'item'. Only items with
+            // a smaller id can appear on these paths.
+            int[] pathSupportCounts = new int[item];
+            int conditionalItemLimit = 0;
+
+            for (Node node = tree.heads[item]; node != null; node = node.next) {
+                for (Node n = node.parent; n.item >= 0; n = n.parent) {
+                    pathSupportCounts[n.item] += node.count;
+                    conditionalItemLimit = Math.max(conditionalItemLimit,
+                                                    n.item + 1);
+                }
+            }
+
+            if (conditionalItemLimit == 0) {
+                continue;
+            }
+
+            // Build the conditional FP-tree of 'item' out of its prefix paths,
+            // keeping only the items that are frequent together with 'item'.
+            Tree conditionalTree = new Tree(conditionalItemLimit);
+            int[] path = new int[conditionalItemLimit];
+
+            for (Node node = tree.heads[item]; node != null; node = node.next) {
+                int length = 0;
+
+                for (Node n = node.parent; n.item >= 0; n = n.parent) {
+                    if (isFrequent(pathSupportCounts[n.item],
+                                   transactions,
+                                   minimumSupport)) {
+                        path[length++] = n.item;
+                    }
+                }
+
+                if (length > 0) {
+                    reverse(path, length);
+                    conditionalTree.insert(path, length, node.count);
+                }
+            }
+
+            mine(conditionalTree,
+                 itemset,
+                 collector,
+                 transactions,
+                 minimumSupport);
+        }
+    }
+
+    private static void reverse(int[] array, int length) {
+        for (int i = 0, j = length - 1; i < j; ++i, --j) {
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    private static final class Node {
+
+        final int item;
+        final Node parent;
+        int count;
+
+        // The next node holding the same item, forming the node-link list
+        // that starts at the header table of the tree.
+        Node next;
+
+        int[] childItems;
+        Node[] children;
+        int childCount;
+
+        Node(int item, Node parent) {
+            this.item = item;
+            this.parent = parent;
+        }
+
+        Node getChild(int item) {
+            int index = childCount == 0 ?
+                        -1 :
+                        Arrays.binarySearch(childItems, 0, childCount, item);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void addChild(Node child) {
+            if (childCount == 0) {
+                childItems = new int[2];
+                children = new Node[2];
+            } else if (childCount == childItems.length) {
+                childItems = Arrays.copyOf(childItems, 2 * childCount);
+                children = Arrays.copyOf(children, 2 * childCount);
+            }
+
+            int index = -Arrays.binarySearch(childItems,
+                                             0,
+                                             childCount,
+                                             child.item) - 1;
+
+            System.arraycopy(childItems, index, childItems, index + 1,
+                             childCount - index);
+            System.arraycopy(children, index, children, index + 1,
+                             childCount - index);
+
+            childItems[index] = child.item;
+            children[index] = child;
+            ++childCount;
+        }
+    }
+
+    private static final class Tree {
+
+        // All items in this tree are below this id.
+        final int itemLimit;
+        final Node root = new Node(-1, null);
+
+        // The header table: the first node of each item, and the total count
+        // of each item in the tree.
+        final Node[] heads;
+        final int[] supportCounts;
+
+        Tree(int itemLimit) {
+            this.itemLimit = itemLimit;
+            this.heads = new Node[itemLimit];
+            this.supportCounts = new int[itemLimit];
+        }
+
+        /**
+         * Inserts the first {@code length} items of the input array, which
+         * must be sorted by ascending id, with the given count.
+         */
+        void insert(int[] items, int length, int count) {
+            Node node = root;
+
+            for (int i = 0; i < length; ++i) {
+                int item = items[i];
+                Node child = node.getChild(item);
+
+                if (child == null) {
+                    child = new Node(item, node);
+                    child.next = heads[item];
+                    heads[item] = child;
+                    node.addChild(child);
+                }
+
+                child.count += count;
+                supportCounts[item] += count;
+                node = child;
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package apriori;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gathers the encoded itemsets found by a mining engine, and turns them into
+ * the {@link FrequentItemsetData} the engine returns. The frequent itemsets are
+ * listed by size, and within a size in the lexicographic order of their item
+ * ids, whatever order the engine found them in, so that every engine lists
+ * them like the level-wise Apriori does. The support counts go into an 
+ * {@link ItemsetSupportStore} over the engine's item ids.
+ *
+ * <p>In the closed and maximal modes, the frequent itemsets are filtered once
+ * all of them are known: an itemset is compared with its supersets one item
+ * larger, which are enough to decide both properties. If the engine stopped
+ * early, an itemset whose supersets one item larger may not all have been
+ * found cannot be decided, so it is not listed; its support count is still
+ * stored.
+ *
+ * @param <I> the actual item type.
+ */
+class FrequentItemsetCollector<I> {
+
+    private final ItemDictionary<I> dictionary;
+    private final boolean retainInfrequentSupports;
+    private final ItemsetMode mode;
+
+    // The frequent itemsets, by size, in the order they were added until the
+    // result is built.
+    private final List<List<Itemset>> levelList = new ArrayList<>();
+    private final List<Itemset> infrequentItemsetList = new ArrayList<>();
+    private int minimumSupportCount;
+
+    // The size up to which all frequent itemsets were found.
+    private int completeLevels = Integer.MAX_VALUE;
+
+    // The size of the largest itemsets the engine searched for.
+    private int maximumItemsetLength = Integer.MAX_VALUE;
+
+    /**
+     * Keeps all frequent itemsets, and the support counts of the frequent 
+     * itemsets only.
+     */
+    FrequentItemsetCollector(ItemDictionary<I> dictionary) {
+        this(dictionary, false, ItemsetMode.ALL);
+    }
+
+    /**
+     * @param retainInfrequentSupports whether to keep the support counts of
+     *                                 the counted itemsets that turned out not
+     *                                 to be frequent as well; ignored in the
+     *                                 closed mode.
+     * @param mode                     the frequent itemsets to return.
+     */
+    FrequentItemsetCollector(ItemDictionary<I> dictionary,
+                             boolean retainInfrequentSupports,
+                             ItemsetMode mode) {
+        this.dictionary = dictionary;
+        this.retainInfrequentSupports = retainInfrequentSupports 
+                                        && mode != ItemsetMode.CLOSED;
+        this.mode = mode;
+    }
+
+    /**
+     * Records the support count of an itemset that was counted, but turned 
+     * out not to be frequent. Ignored unless infrequent supports are retained.
+     */
+    void addSupportCount(int[] itemset, int supportCount) {
+        if (retainInfrequentSupports) {
+            infrequentItemsetList.add(new Itemset(itemset, supportCount));
+        }
+    }
+
+    /**
+     * Sets a support count the frequent itemsets must reach on top of the
+     * minimum support, as a top-k search raises it while it runs. The 
+     * itemsets added below it are dropped from the frequent ones when the 
+     * result is built.
+     */
+    void setMinimumSupportCount(int minimumSupportCount) {
+        this.minimumSupportCount = minimumSupportCount;
+    }
+
+    /**
+     * Marks the result as incomplete: the engine stopped early, having found
+     * all frequent itemsets of up to the input size only.
+     */
+    void setCompleteLevels(int completeLevels) {
+        this.completeLevels = completeLevels;
+    }
+
+    /**
+     * Sets the size of the largest itemsets the engine searched for. If any
+     * itemset of that size is frequent, larger ones may be frequent as well,
+     * so the result is incomplete.
+     */
+    void setMaximumItemsetLength(int maximumItemsetLength) {
+        this.maximumItemsetLength = maximumItemsetLength;
+    }
+
+    void addFrequentItemset(int[] itemset, int supportCount) {
+        while (levelList.size() < itemset.length) {
+            levelList.add(new ArrayList<>());
+        }
+
+        levelList.get(itemset.length - 1)
+                 .add(new Itemset(itemset, supportCount));
+    }
+
+    FrequentItemsetData<I> toFrequentItemsetData(double minimumSupport,
+                                                 int transactions) {
+        // A support count raised above the minimum support leaves out the
+        // frequent itemsets below it.
+        boolean complete = completeLevels == Integer.MAX_VALUE
+                && !AbstractFrequentItemsetGenerator.isFrequent(
+                        minimumSupportCount - 1,
+                        transactions,
+                        minimumSupport);
+
+        if (minimumSupportCount > 0) {
+            dropBelowMinimumSupportCount();
+        }
+
+        complete &= levelList.size() < maximumItemsetLength;
+
+        for (List<Itemset> level : levelList) {
+            level.sort((itemset1, itemset2) ->
+                    CandidateGenerator.ITEMSET_COMPARATOR.compare(
+                            itemset1.items, 
+                            itemset2.items));
+        }
+
+        if (mode != ItemsetMode.ALL) {
+            markSubsumedItemsets();
+        }
+
+        List<Set<I>> frequentItemsetList = new ArrayList<>();
+        List<int[]> storedItemsetList = new ArrayList<>();
+        int[] storedSupportCounts = new int[16];
+
+        for (List<Itemset> level : levelList) {
+            for (Itemset itemset : level) {
+                // An itemset is decided only if all of its frequent
+                // supersets one item larger were found.
+                boolean decided = itemset.items.length < completeLevels;
+                boolean listed = mode == ItemsetMode.ALL 
+                              || (decided 
+                                  && (mode == ItemsetMode.CLOSED ? 
+                                      !itemset.hasSameSupportSuperset :
+                                      !itemset.hasFrequentSuperset));
+
+                if (listed) {
+                    frequentItemsetList.add(dictionary.decode(itemset.items));
+                }
+
+                if (listed || !decided || mode == ItemsetMode.MAXIMAL) {
+                    storedSupportCounts = add(itemset,
+                                              storedItemsetList,
+                                              storedSupportCounts);
+                }
+            }
+        }
+
+        for (Itemset itemset : infrequentItemsetList) {
+            storedSupportCounts = add(itemset,
+                                      storedItemsetList,
+                                      storedSupportCounts);
+        }
+
+        ItemsetSupportStore<I> supportStore =
+                mode == ItemsetMode.CLOSED ?
+                ItemsetSupportStore.buildClosed(dictionary,
+                                                storedItemsetList,
+                                                storedSupportCounts) :
+                ItemsetSupportStore.build(dictionary,
+                                          storedItemsetList,
+                                          storedSupportCounts);
+
+        return new FrequentItemsetData<>(frequentItemsetList,
+                                         supportStore,
+                                         minimumSupport,
+                                         transactions,
+                                         complete,
+                                         mode);
+    }
+
+    private void dropBelowMinimumSupportCount() {
+        for (List<Itemset> level : levelList) {
+            level.removeIf(itemset -> {
+                if (itemset.supportCount >= minimumSupportCount) {
+                    return false;
+                }
+
+                if (retainInfrequentSupports) {
+                    infrequentItemsetList.add(itemset);
+                }
+
+                return true;
+            });
+        }
+
+        while (!levelList.isEmpty() 
+                && levelList.get(levelList.size() - 1).isEmpty()) {
+            levelList.remove(levelList.size() - 1);
+        }
+    }
+
+    /**
+     * Marks each frequent itemset that has a frequent superset one item
+     * larger, and each one that has such a superset of the same support. The
+     * levels must be sorted.
+     */
+    private void markSubsumedItemsets() {
+        for (int k = 1; k < levelList.size(); ++k) {
+            List<Itemset> subsetLevel = levelList.get(k - 1);
+            List<int[]> subsetList = new ArrayList<>(subsetLevel.size());
+
+            for (Itemset itemset : subsetLevel) {
+                subsetList.add(itemset.items);
+            }
+
+            for (Itemset superset : levelList.get(k)) {
+                for (int skip = 0; skip <= k; ++skip) {
+                    int index = CandidateGenerator.indexOfSubset(
+                            subsetList,
+                            superset.items,
+                            skip);
+
+                    // All subsets of a frequent itemset are frequent, but an
+                    // engine may not have reported all of them.
+                    if (index < 0) {
+                        continue;
+                    }
+
+                    Itemset subset = subsetLevel.get(index);
+                    subset.hasFrequentSuperset = true;
+
+                    if (subset.supportCount == superset.supportCount) {
+                        subset.hasSameSupportSuperset = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] add(Itemset itemset,
+                             List<int[]> itemsetList,
+                             int[] supportCounts) {
+        if (itemsetList.size() == supportCounts.length) {
+            supportCounts = Arrays.copyOf(supportCounts, 
+                                          2 * supportCounts.length);
+        }
+
+        supportCounts[itemsetList.size()] = itemset.supportCount;
+        itemsetList.add(itemset.items);
+        return supportCounts;
+    }
+
+    private static final class Itemset {
+
+        final int[] items;
+        final int supportCount;
+        boolean hasFrequentSuperset;
+        boolean hasSameSupportSuperset;
+
+        Itemset(int[] items, int supportCount) {
+            // Engines may reuse their itemset arrays, so keep a sorted copy.
+            this.items = items.clone();
+            this.supportCount = supportCount;
+            Arrays.sort(this.items);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package apriori;
+
+/**
+ * Receives the frequent itemsets of a mining run as soon as they are final,
+ * while the run goes on, so that they can be written out before all of them
+ * are known.
+ *
+ * @param <I> the actual item type.
+ */
+interface FrequentItemsetConsumer<I> {
+
+    /**
+     * Called once, before any itemset, with the dictionary the ids of the
+     * itemsets refer to, and the number of transactions mined.
+     */
+    default void start(ItemDictionary<I> dictionary, int transactionNumber) {}
+
+    /**
+     * Accepts a frequent itemset as the sorted ids of its items. The array
+     * belongs to the engine, so it must not be modified.
+     */
+    void accept(int[] itemset, int supportCount);
+}
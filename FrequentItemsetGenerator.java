@@ -0,0 +1,41 @@
+package apriori;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A mining engine that finds all frequent itemsets of a transaction list. All
+ * engines return the same {@link FrequentItemsetData}, so that the result can
+ * be passed to {@link AssociationRuleGenerator} regardless of the engine that
+ * produced it.
+ *
+ * @param <I> the actual item type.
+ */
+interface FrequentItemsetGenerator<I> {
+
+    /**
+     * Finds all itemsets whose support is at least {@code minimumSupport}.
+     *
+     * @param transactionList the transactions to mine.
+     * @param minimumSupport  the minimum support, within [0, 1].
+     * @return the frequent itemsets, or null if the transaction list is empty.
+     * @throws UncheckedIOException if an engine that works through files
+     *                              fails to read or write them.
+     */
+    FrequentItemsetData<I> generate(List<Set<I>> transactionList,
+                                    double minimumSupport);
+
+    /**
+     * Finds all itemsets whose support is at least {@code minimumSupport},
+     * reading the transactions from a source instead of a materialized list.
+     *
+     * @param source         the transactions to mine.
+     * @param minimumSupport the minimum support, within [0, 1].
+     * @return the frequent itemsets, or null if the source is empty.
+     * @throws IOException if reading the source fails.
+     */
+    FrequentItemsetData<I> generate(TransactionSource<I> source,
+                                    double minimumSupport) throws IOException;
+}
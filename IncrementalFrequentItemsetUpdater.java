@@ -0,0 +1,404 @@
+package apriori;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Updates mined frequent itemsets after transactions were added to, or
+ * removed from, the data set they were mined from, in the style of FUP.
+ *
+ * <p>The update goes level by level, like Apriori. The support count of an
+ * itemset that was frequent before is known, and only the added and removed
+ * transactions are counted for it. An itemset that was not frequent before
+ * can only become frequent if it occurs often enough among the added
+ * transactions; only the survivors of that test are counted in the original
+ * data, in one scan per level. The result is the same as mining the updated
+ * data set from scratch.
+ *
+ * <p>The input itemsets must be all frequent itemsets of the original data,
+ * since an itemset missing from them is taken as infrequent. Those of the
+ * closed or maximal modes, or of an incomplete run, are rejected.
+ *
+ * @param <I> the actual item type.
+ */
+class IncrementalFrequentItemsetUpdater<I> {
+
+    /**
+     * Updates the input data after adding transactions.
+     *
+     * @param data                 the frequent itemsets of the original data.
+     * @param originalTransactions the original data.
+     * @param addedTransactions    the transactions added to it.
+     * @return the frequent itemsets of the updated data, at the same minimum
+     *         support.
+     */
+    public FrequentItemsetData<I>
+        update(FrequentItemsetData<I> data,
+               TransactionSource<I> originalTransactions,
+               List<Set<I>> addedTransactions) throws IOException {
+        return update(data,
+                      originalTransactions,
+                      addedTransactions,
+                      Collections.<Set<I>>emptyList());
+    }
+
+    /**
+     * Updates the input data after adding and removing transactions.
+     *
+     * @param data                 the frequent itemsets of the original data.
+     * @param originalTransactions the original data, still including the
+     *                             removed transactions.
+     * @param addedTransactions    the transactions added to it.
+     * @param removedTransactions  the transactions removed from it.
+     * @return the frequent itemsets of the updated data, at the same minimum
+     *         support, or null if the updated data is empty.
+     * @throws IllegalArgumentException if the input data does not list all
+     *                                  frequent itemsets, or if more
+     *                                  transactions are removed than there
+     *                                  were.
+     */
+    public FrequentItemsetData<I>
+        update(FrequentItemsetData<I> data,
+               TransactionSource<I> originalTransactions,
+               List<Set<I>> addedTransactions,
+               List<Set<I>> removedTransactions) throws IOException {
+        Objects.requireNonNull(data, "The frequent itemset data is null.");
+        Objects.requireNonNull(originalTransactions,
+                               "The original transaction source is null.");
+        Objects.requireNonNull(addedTransactions,
+                               "The added transaction list is null.");
+        Objects.requireNonNull(removedTransactions,
+                               "The removed transaction list is null.");
+
+        if (data.getItemsetMode() != ItemsetMode.ALL) {
+            throw new IllegalArgumentException(
+                    "The frequent itemsets must be all of them, not " +
+                    data.getItemsetMode());
+        }
+
+        if (!data.isComplete()) {
+            throw new IllegalArgumentException(
+                    "The frequent itemsets are incomplete.");
+        }
+
+        if (removedTransactions.size() > data.getTransactionNumber()) {
+            throw new IllegalArgumentException(
+                    "The removed transactions are too many: " +
+                    removedTransactions.size() + ", should be at most " +
+                    data.getTransactionNumber());
+        }
+
+        return new Update(data,
+                          originalTransactions,
+                          addedTransactions,
+                          removedTransactions).run();
+    }
+
+    /**
+     * Updates the input data after adding and removing transactions, with the
+     * original data given as a list.
+     */
+    public FrequentItemsetData<I>
+        update(FrequentItemsetData<I> data,
+               List<Set<I>> originalTransactions,
+               List<Set<I>> addedTransactions,
+               List<Set<I>> removedTransactions) {
+        Objects.requireNonNull(originalTransactions,
+                               "The original transaction list is null.");
+
+        try {
+            return update(data,
+                          new ListTransactionSource<>(originalTransactions),
+                          addedTransactions,
+                          removedTransactions);
+        } catch (IOException ex) {
+            // A list source never throws.
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private final class Update {
+
+        private final FrequentItemsetData<I> data;
+        private final TransactionSource<I> source;
+        private final double minimumSupport;
+        private final int transactions;
+        private final Set<Set<I>> oldFrequentItemsetSet;
+
+        // Our own ids for the items, shared by the added, removed and
+        // original transactions.
+        private final ItemDictionary<I> dictionary = new ItemDictionary<>();
+        private final int[][] addedArray;
+        private final int[][] removedArray;
+
+        // The lowest net count in the added and removed transactions that an
+        // itemset, which was not frequent before, needs to become frequent.
+        private final double minimumDelta;
+
+        // Maps the ids of the source dictionary to ours, or -1 for items that
+        // cannot be in any candidate.
+        private int[] sourceIdMap = new int[0];
+
+        Update(FrequentItemsetData<I> data,
+               TransactionSource<I> source,
+               List<Set<I>> addedTransactions,
+               List<Set<I>> removedTransactions) {
+            this.data = data;
+            this.source = source;
+            this.minimumSupport = data.getMinimumSupport();
+            this.transactions = data.getTransactionNumber()
+                                + addedTransactions.size()
+                                - removedTransactions.size();
+            this.oldFrequentItemsetSet =
+                    new HashSet<>(data.getFrequentItemsetList());
+
+            for (Set<I> itemset : data.getFrequentItemsetList()) {
+                for (I item : itemset) {
+                    dictionary.intern(item);
+                }
+            }
+
+            this.addedArray = encode(addedTransactions);
+            this.removedArray = encode(removedTransactions);
+
+            // An itemset that was not frequent had less than
+            // 'minimumSupport * |D|' occurrences in the original data 'D'. If
+            // its net count 'delta' in the added and removed transactions is
+            // below 'minimumSupport * (|D'| - |D|)', it has less than
+            // 'minimumSupport * |D'|' occurrences in the updated data 'D'' as
+            // well.
+            this.minimumDelta = minimumSupport * (addedTransactions.size()
+                                                  - removedTransactions.size());
+        }
+
+        FrequentItemsetData<I> run() throws IOException {
+            if (transactions <= 0) {
+                return null;
+            }
+
+            FrequentItemsetCollector<I> collector =
+                    new FrequentItemsetCollector<>(dictionary);
+
+            // If the updated data is not larger, even items that occur in
+            // neither the added nor the removed transactions may become
+            // frequent. Such items are only known from the original data, so
+            // count all of its items right away.
+            int[] originalItemCounts = null;
+
+            if (minimumDelta <= 0.0) {
+                originalItemCounts = countAllOriginalItems();
+            }
+
+            List<int[]> candidateList = new ArrayList<>();
+
+            for (int item = 0; item < dictionary.size(); ++item) {
+                candidateList.add(new int[]{ item });
+            }
+
+            List<int[]> frequentItemsetList =
+                    updateLevel(candidateList, originalItemCounts, collector);
+
+            while (!frequentItemsetList.isEmpty()) {
+                frequentItemsetList.sort(
+                        CandidateGenerator.ITEMSET_COMPARATOR);
+                candidateList = CandidateGenerator.generateCandidates(
+                        frequentItemsetList);
+                frequentItemsetList =
+                        updateLevel(candidateList, null, collector);
+            }
+
+            return collector.toFrequentItemsetData(minimumSupport,
+                                                   transactions);
+        }
+
+        /**
+         * Finds the frequent itemsets among the candidates of one level.
+         *
+         * @param originalCounts the support counts of the candidates in the
+         *                       original data, if already known, or null.
+         */
+        private List<int[]> updateLevel(List<int[]> candidateList,
+                                        int[] originalCounts,
+                                        FrequentItemsetCollector<I> collector)
+                throws IOException {
+            CandidateTrie candidateTrie = new CandidateTrie(candidateList);
+            int[] addedCounts = new int[candidateList.size()];
+            int[] removedCounts = new int[candidateList.size()];
+
+            CandidateTrie.HitConsumer addedCounter =
+                    (candidateIndex, weight) ->
+                            addedCounts[candidateIndex] += weight;
+            CandidateTrie.HitConsumer removedCounter =
+                    (candidateIndex, weight) ->
+                            removedCounts[candidateIndex] += weight;
+
+            for (int[] transaction : addedArray) {
+                candidateTrie.count(transaction,
+                                    0,
+                                    transaction.length,
+                                    1,
+                                    addedCounter);
+            }
+
+            for (int[] transaction : removedArray) {
+                candidateTrie.count(transaction,
+                                    0,
+                                    transaction.length,
+                                    1,
+                                    removedCounter);
+            }
+
+            int[] newCounts = new int[candidateList.size()];
+            List<int[]> rescanList = new ArrayList<>();
+            List<Integer> rescanIndexList = new ArrayList<>();
+            Map<Set<I>, Integer> oldSupportCountMap =
+                    data.getSupportCountMap();
+
+            for (int i = 0; i < candidateList.size(); ++i) {
+                int delta = addedCounts[i] - removedCounts[i];
+
+                if (originalCounts != null) {
+                    newCounts[i] = originalCounts[i] + delta;
+                    continue;
+                }
+
+                Set<I> itemset = dictionary.decode(candidateList.get(i));
+
+                if (oldFrequentItemsetSet.contains(itemset)) {
+                    newCounts[i] = oldSupportCountMap.get(itemset) + delta;
+                } else if (delta >= minimumDelta) {
+                    newCounts[i] = delta;
+                    rescanList.add(candidateList.get(i));
+                    rescanIndexList.add(i);
+                } else {
+                    newCounts[i] = -1;
+                }
+            }
+
+            if (!rescanList.isEmpty()) {
+                int[] rescanCounts = countOriginal(rescanList);
+
+                for (int j = 0; j < rescanCounts.length; ++j) {
+                    newCounts[rescanIndexList.get(j)] += rescanCounts[j];
+                }
+            }
+
+            List<int[]> ret = new ArrayList<>();
+
+            for (int i = 0; i < candidateList.size(); ++i) {
+                int[] itemset = candidateList.get(i);
+
+                if (AbstractFrequentItemsetGenerator.isFrequent(
+                        newCounts[i],
+                        transactions,
+                        minimumSupport)) {
+                    collector.addFrequentItemset(itemset, newCounts[i]);
+                    ret.add(itemset);
+                } else if (newCounts[i] > 0) {
+                    collector.addSupportCount(itemset, newCounts[i]);
+                }
+            }
+
+            return ret;
+        }
+
+        /**
+         * Counts the input candidates in the original data.
+         */
+        private int[] countOriginal(List<int[]> candidateList)
+                throws IOException {
+            CandidateTrie candidateTrie = new CandidateTrie(candidateList);
+            int[][] bufferHolder = { new int[16] };
+
+            source.scan((items, length) -> {
+                if (length > bufferHolder[0].length) {
+                    bufferHolder[0] = new int[2 * length];
+                }
+
+                int[] transaction = bufferHolder[0];
+                int size = 0;
+
+                for (int i = 0; i < length; ++i) {
+                    int item = mapSourceId(items[i]);
+
+                    if (item >= 0) {
+                        transaction[size++] = item;
+                    }
+                }
+
+                Arrays.sort(transaction, 0, size);
+                candidateTrie.count(transaction, 0, size, 1);
+            });
+
+            return candidateTrie.getSupportCounts();
+        }
+
+        /**
+         * Adds every item of the original data to the dictionary, and returns
+         * the support counts of all items in the original data.
+         */
+        private int[] countAllOriginalItems() throws IOException {
+            int[][] countsHolder = { new int[dictionary.size() + 16] };
+
+            source.scan((items, length) -> {
+                for (int i = 0; i < length; ++i) {
+                    I item = source.getDictionary().getItem(items[i]);
+                    int id = dictionary.intern(item);
+
+                    if (id >= countsHolder[0].length) {
+                        countsHolder[0] = Arrays.copyOf(countsHolder[0],
+                                                        2 * id + 1);
+                    }
+
+                    ++countsHolder[0][id];
+                }
+            });
+
+            return Arrays.copyOf(countsHolder[0], dictionary.size());
+        }
+
+        private int mapSourceId(int sourceId) {
+            if (sourceId >= sourceIdMap.length) {
+                int oldLength = sourceIdMap.length;
+                sourceIdMap = Arrays.copyOf(sourceIdMap,
+                                            Math.max(sourceId + 1,
+                                                     2 * oldLength));
+                Arrays.fill(sourceIdMap, oldLength, sourceIdMap.length, -2);
+            }
+
+            if (sourceIdMap[sourceId] == -2) {
+                sourceIdMap[sourceId] = dictionary.getId(
+                        source.getDictionary().getItem(sourceId));
+            }
+
+            return sourceIdMap[sourceId];
+        }
+
+        private int[][] encode(List<Set<I>> transactionList) {
+            int[][] ret = new int[transactionList.size()][];
+
+            for (int i = 0; i < ret.length; ++i) {
+                Set<I> transaction = transactionList.get(i);
+                int[] array = new int[transaction.size()];
+                int length = 0;
+
+                for (I item : transaction) {
+                    array[length++] = dictionary.intern(item);
+                }
+
+                Arrays.sort(array);
+                ret[i] = array;
+            }
+
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package apriori;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the items of a data set to dense integer ids and back. The mining 
+ * engines work on the ids only, and decode them back to items when they build
+ * the {@link FrequentItemsetData} they return.
+ *
+ * @param <I> the actual item type.
+ */
+class ItemDictionary<I> {
+
+    private final Map<I, Integer> idMap = new HashMap<>();
+    private final List<I> itemList = new ArrayList<>();
+
+    /**
+     * Returns the id of the input item, assigning the next free id if the item
+     * is not yet in this dictionary.
+     */
+    int intern(I item) {
+        Integer id = idMap.get(item);
+
+        if (id == null) {
+            id = itemList.size();
+            idMap.put(item, id);
+            itemList.add(item);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the id of the input item, or -1 if the item is not in this
+     * dictionary.
+     */
+    int getId(I item) {
+        Integer id = idMap.get(item);
+        return id == null ? -1 : id;
+    }
+
+    I getItem(int id) {
+        return itemList.get(id);
+    }
+
+    int size() {
+        return itemList.size();
+    }
+
+    /**
+     * Encodes the input itemset as a sorted array of ids, or returns null if 
+     * any of its items is not in this dictionary.
+     */
+    int[] encode(Set<I> itemset) {
+        int[] ret = new int[itemset.size()];
+        int index = 0;
+
+        for (I item : itemset) {
+            int id = getId(item);
+
+            if (id < 0) {
+                return null;
+            }
+
+            ret[index++] = id;
+        }
+
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    Set<I> decode(int[] itemset) {
+        Set<I> ret = new HashSet<>(itemset.length);
+
+        for (int id : itemset) {
+            ret.add(itemList.get(id));
+        }
+
+        return ret;
+    }
+}
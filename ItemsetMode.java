@@ -0,0 +1,28 @@
+package apriori;
+
+/**
+ * Selects which of the frequent itemsets a mining engine returns.
+ */
+enum ItemsetMode {
+
+    /**
+     * Every frequent itemset.
+     */
+    ALL,
+
+    /**
+     * The closed frequent itemsets only: those without a proper superset of
+     * the same support. Only their supports are stored; the support of any
+     * other frequent itemset is the largest support among its closed 
+     * supersets, and is derived from them on lookup.
+     */
+    CLOSED,
+
+    /**
+     * The maximal frequent itemsets only: those without a frequent proper
+     * superset. Their subsets are all frequent, but their supports cannot be
+     * derived from the maximal itemsets, so the supports of all frequent
+     * itemsets are stored.
+     */
+    MAXIMAL
+}
@@ -0,0 +1,457 @@
+package apriori;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Stores the support counts of itemsets in a compact prefix trie over item
+ * ids. Each itemset is a sorted array of ids, and its count sits at the node
+ * its path ends at. The nodes live in flat int arrays laid out breadth-first,
+ * so the children of a node are contiguous and sorted by item id, and a
+ * lookup is one binary search per item, without allocating.
+ *
+ * <p>A store of closed itemsets also answers for the itemsets it does not 
+ * hold: the support of a frequent itemset is the largest support among its
+ * closed supersets, which a lookup finds by walking the trie.
+ *
+ * @param <I> the actual item type.
+ */
+final class ItemsetSupportStore<I> {
+
+    private final ItemDictionary<I> dictionary;
+
+    // Node 0 is the root, representing the empty itemset. For every node:
+    // the item on the edge leading to it, its parent, the support count of
+    // the itemset it ends (or -1 if no stored itemset ends there), and the
+    // range of its children.
+    private final int[] nodeItems;
+    private final int[] parents;
+    private final int[] supportCounts;
+    private final int[] firstChildren;
+    private final int[] childCounts;
+    private final int size;
+    private final boolean closed;
+
+    private Map<Set<I>, Integer> mapView;
+
+    private ItemsetSupportStore(ItemDictionary<I> dictionary,
+                                int[] nodeItems,
+                                int[] parents,
+                                int[] supportCounts,
+                                int[] firstChildren,
+                                int[] childCounts,
+                                int size,
+                                boolean closed) {
+        this.dictionary = dictionary;
+        this.nodeItems = nodeItems;
+        this.parents = parents;
+        this.supportCounts = supportCounts;
+        this.firstChildren = firstChildren;
+        this.childCounts = childCounts;
+        this.size = size;
+        this.closed = closed;
+    }
+
+    /**
+     * Builds a store out of encoded itemsets.
+     *
+     * @param dictionary        the dictionary the item ids refer to.
+     * @param itemsetList       the itemsets, which are sorted in place.
+     * @param supportCountArray the support count of each itemset.
+     */
+    static <I> ItemsetSupportStore<I> build(ItemDictionary<I> dictionary,
+                                            List<int[]> itemsetList,
+                                            int[] supportCountArray) {
+        return build(dictionary, itemsetList, supportCountArray, false);
+    }
+
+    /**
+     * Builds a store out of the closed frequent itemsets of a data set, which
+     * derives the supports of the other frequent itemsets.
+     *
+     * @param dictionary        the dictionary the item ids refer to.
+     * @param itemsetList       the closed frequent itemsets, which are 
+     *                          sorted in place.
+     * @param supportCountArray the support count of each itemset.
+     */
+    static <I> ItemsetSupportStore<I> 
+        buildClosed(ItemDictionary<I> dictionary,
+                    List<int[]> itemsetList,
+                    int[] supportCountArray) {
+        return build(dictionary, itemsetList, supportCountArray, true);
+    }
+
+    private static <I> ItemsetSupportStore<I> 
+        build(ItemDictionary<I> dictionary,
+              List<int[]> itemsetList,
+              int[] supportCountArray,
+              boolean closed) {
+        Builder builder = new Builder();
+
+        for (int i = 0; i < itemsetList.size(); ++i) {
+            int[] itemset = itemsetList.get(i);
+            Arrays.sort(itemset);
+            builder.add(itemset, supportCountArray[i]);
+        }
+
+        return builder.build(dictionary, closed);
+    }
+
+    /**
+     * Builds a store holding the entries of the input map.
+     */
+    static <I> ItemsetSupportStore<I> of(Map<Set<I>, Integer> supportCountMap) {
+        ItemDictionary<I> dictionary = new ItemDictionary<>();
+        Builder builder = new Builder();
+
+        for (Map.Entry<Set<I>, Integer> entry : supportCountMap.entrySet()) {
+            int[] itemset = new int[entry.getKey().size()];
+            int index = 0;
+
+            for (I item : entry.getKey()) {
+                itemset[index++] = dictionary.intern(item);
+            }
+
+            Arrays.sort(itemset);
+            builder.add(itemset, entry.getValue());
+        }
+
+        return builder.build(dictionary, false);
+    }
+
+    ItemDictionary<I> getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the number of itemsets held in this store. A store of closed
+     * itemsets holds the closed ones only.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the support count of the itemset made of the first
+     * {@code length} ids of the input array, which must be sorted, or -1 if
+     * the itemset is not in this store. A store of closed itemsets derives 
+     * the support of any frequent itemset.
+     */
+    int getSupportCount(int[] itemset, int length) {
+        int node = find(itemset, length);
+
+        if (node >= 0 && supportCounts[node] >= 0) {
+            return supportCounts[node];
+        }
+
+        return closed ? maximumSupersetCount(0, itemset, 0, length) : -1;
+    }
+
+    /**
+     * Returns the node the input itemset ends at, or -1 if there is none.
+     */
+    private int find(int[] itemset, int length) {
+        int node = 0;
+
+        for (int i = 0; i < length; ++i) {
+            int first = firstChildren[node];
+            int index = Arrays.binarySearch(nodeItems,
+                                            first,
+                                            first + childCounts[node],
+                                            itemset[i]);
+
+            if (index < 0) {
+                return -1;
+            }
+
+            node = index;
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns the largest support count among the stored supersets of
+     * {@code itemset[matched, length)} in the subtrie of the input node, or -1
+     * if there are none.
+     */
+    private int maximumSupersetCount(int node,
+                                     int[] itemset,
+                                     int matched,
+                                     int length) {
+        if (matched == length && supportCounts[node] >= 0) {
+            // Any stored itemset deeper down is a superset of this one, and
+            // cannot have a larger support.
+            return supportCounts[node];
+        }
+
+        int ret = -1;
+        int first = firstChildren[node];
+        int end = first + childCounts[node];
+
+        for (int child = first; child < end; ++child) {
+            int item = nodeItems[child];
+
+            if (matched < length && item > itemset[matched]) {
+                // The children are sorted; none of the rest can lead to the
+                // missing item.
+                break;
+            }
+
+            int next = matched < length && item == itemset[matched] ?
+                       matched + 1 :
+                       matched;
+            ret = Math.max(ret,
+                           maximumSupersetCount(child, itemset, next, length));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the support count of the input itemset, or -1 if it is not in
+     * this store.
+     */
+    int getSupportCount(Set<?> itemset) {
+        int[] ids = encode(itemset);
+        return ids == null ? -1 : getSupportCount(ids, ids.length);
+    }
+
+    /**
+     * Encodes the input itemset as sorted ids, or returns null if any of its
+     * items is unknown.
+     */
+    private int[] encode(Set<?> itemset) {
+        int[] ids = new int[itemset.size()];
+        int index = 0;
+
+        for (Object item : itemset) {
+            @SuppressWarnings("unchecked")
+            int id = dictionary.getId((I) item);
+
+            if (id < 0) {
+                return null;
+            }
+
+            ids[index++] = id;
+        }
+
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns a read-only map view of the itemsets held in this store. 
+     * Looking up a key encodes it into ids; iterating decodes every itemset
+     * into a new set. The view does not derive supports.
+     */
+    Map<Set<I>, Integer> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+
+        return mapView;
+    }
+
+    private Set<I> decode(int node) {
+        int[] itemset = new int[depth(node)];
+
+        for (int i = itemset.length - 1; i >= 0; --i) {
+            itemset[i] = nodeItems[node];
+            node = parents[node];
+        }
+
+        return dictionary.decode(itemset);
+    }
+
+    private int depth(int node) {
+        int depth = 0;
+
+        while (node != 0) {
+            node = parents[node];
+            ++depth;
+        }
+
+        return depth;
+    }
+
+    private final class MapView extends AbstractMap<Set<I>, Integer> {
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof Set)) {
+                return null;
+            }
+
+            int[] ids = encode((Set<?>) key);
+            int node = ids == null ? -1 : find(ids, ids.length);
+            return node < 0 || supportCounts[node] < 0 ? 
+                   null : 
+                   supportCounts[node];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<Set<I>, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<Set<I>, Integer>>() {
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Map.Entry<Set<I>, Integer>> iterator() {
+                    return new Iterator<Map.Entry<Set<I>, Integer>>() {
+
+                        private int node = nextNode(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return node < supportCounts.length;
+                        }
+
+                        @Override
+                        public Map.Entry<Set<I>, Integer> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Map.Entry<Set<I>, Integer> entry =
+                                    new SimpleImmutableEntry<>(
+                                            decode(node),
+                                            supportCounts[node]);
+                            node = nextNode(node + 1);
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+
+        private int nextNode(int node) {
+            while (node < supportCounts.length && supportCounts[node] < 0) {
+                ++node;
+            }
+
+            return node;
+        }
+    }
+
+    /**
+     * Collects the itemsets in a pointer-based trie, and flattens it
+     * breadth-first.
+     */
+    private static final class Builder {
+
+        private static final class Node {
+
+            int[] items = new int[0];
+            Node[] children = new Node[0];
+            int childCount;
+            int supportCount = -1;
+        }
+
+        private final Node root = new Node();
+        private int size;
+        private int nodes = 1;
+
+        void add(int[] itemset, int supportCount) {
+            Node node = root;
+
+            for (int item : itemset) {
+                int index = Arrays.binarySearch(node.items,
+                                                0,
+                                                node.childCount,
+                                                item);
+
+                if (index >= 0) {
+                    node = node.children[index];
+                    continue;
+                }
+
+                index = -index - 1;
+
+                if (node.childCount == node.items.length) {
+                    int capacity = Math.max(2, 2 * node.childCount);
+                    node.items = Arrays.copyOf(node.items, capacity);
+                    node.children = Arrays.copyOf(node.children, capacity);
+                }
+
+                System.arraycopy(node.items, index, node.items, index + 1,
+                                 node.childCount - index);
+                System.arraycopy(node.children, index, node.children,
+                                 index + 1, node.childCount - index);
+
+                Node child = new Node();
+                node.items[index] = item;
+                node.children[index] = child;
+                ++node.childCount;
+                ++nodes;
+                node = child;
+            }
+
+            if (node.supportCount < 0) {
+                ++size;
+            }
+
+            node.supportCount = supportCount;
+        }
+
+        <I> ItemsetSupportStore<I> build(ItemDictionary<I> dictionary,
+                                         boolean closed) {
+            int[] nodeItems = new int[nodes];
+            int[] parents = new int[nodes];
+            int[] supportCounts = new int[nodes];
+            int[] firstChildren = new int[nodes];
+            int[] childCounts = new int[nodes];
+            Node[] queue = new Node[nodes];
+            queue[0] = root;
+            nodeItems[0] = -1;
+            supportCounts[0] = root.supportCount;
+            int tail = 1;
+
+            // The queue order is the breadth-first order, and the children of
+            // each node are enqueued together, so they get contiguous ids.
+            for (int head = 0; head < nodes; ++head) {
+                Node node = queue[head];
+                firstChildren[head] = tail;
+                childCounts[head] = node.childCount;
+
+                for (int i = 0; i < node.childCount; ++i) {
+                    Node child = node.children[i];
+                    nodeItems[tail] = node.items[i];
+                    parents[tail] = head;
+                    supportCounts[tail] = child.supportCount;
+                    queue[tail++] = child;
+                }
+
+                queue[head] = null;
+            }
+
+            return new ItemsetSupportStore<>(dictionary,
+                                             nodeItems,
+                                             parents,
+                                             supportCounts,
+                                             firstChildren,
+                                             childCounts,
+                                             size,
+                                             closed);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package apriori;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * Writes the statistics of a mining run as JSON lines: one object per event,
+ * each on a line of its own, flushed right away so that a long run can be
+ * followed as it goes. For example:
+ * <pre>
+ * {"event":"level","level":2,"candidates":1225,"prunedCandidates":0,...}
+ * {"event":"rules","itemsets":310,"testedRules":802,"rules":95,...}
+ * </pre>
+ */
+class JsonMiningListener implements MiningListener {
+
+    private final Appendable out;
+
+    JsonMiningListener(Appendable out) {
+        this.out = Objects.requireNonNull(out, "The output is null.");
+    }
+
+    @Override
+    public void levelCompleted(LevelStatistics statistics) {
+        write("{\"event\":\"level\"" +
+              ",\"level\":" + statistics.getLevel() +
+              ",\"candidates\":" + statistics.getCandidates() +
+              ",\"prunedCandidates\":" + statistics.getPrunedCandidates() +
+              ",\"frequentItemsets\":" + statistics.getFrequentItemsets() +
+              ",\"scannedTransactions\":" + 
+              statistics.getScannedTransactions() +
+              ",\"elapsedNanos\":" + statistics.getElapsedNanos() +
+              ",\"allocatedBytes\":" + statistics.getAllocatedBytes() +
+              "}");
+    }
+
+    @Override
+    public void rulesCompleted(RuleStatistics statistics) {
+        write("{\"event\":\"rules\"" +
+              ",\"itemsets\":" + statistics.getItemsets() +
+              ",\"testedRules\":" + statistics.getTestedRules() +
+              ",\"rules\":" + statistics.getRules() +
+              ",\"elapsedNanos\":" + statistics.getElapsedNanos() +
+              ",\"allocatedBytes\":" + statistics.getAllocatedBytes() +
+              "}");
+    }
+
+    private synchronized void write(String line) {
+        try {
+            out.append(line).append('\n');
+
+            if (out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
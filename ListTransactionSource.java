@@ -0,0 +1,45 @@
+package apriori;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Serves an in-memory transaction list as a {@link TransactionSource}.
+ *
+ * @param <I> the actual item type.
+ */
+class ListTransactionSource<I> implements TransactionSource<I> {
+
+    private final List<Set<I>> transactionList;
+    private final ItemDictionary<I> dictionary = new ItemDictionary<>();
+    private int[] buffer = new int[16];
+
+    ListTransactionSource(List<Set<I>> transactionList) {
+        this.transactionList = transactionList;
+    }
+
+    @Override
+    public void scan(TransactionConsumer consumer) {
+        for (Set<I> transaction : transactionList) {
+            if (transaction.size() > buffer.length) {
+                buffer = Arrays.copyOf(buffer, 
+                                       Math.max(transaction.size(),
+                                                2 * buffer.length));
+            }
+
+            int length = 0;
+
+            for (I item : transaction) {
+                buffer[length++] = dictionary.intern(item);
+            }
+
+            consumer.accept(buffer, length);
+        }
+    }
+
+    @Override
+    public ItemDictionary<I> getDictionary() {
+        return dictionary;
+    }
+}
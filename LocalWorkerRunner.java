@@ -0,0 +1,74 @@
+package apriori;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Runs the workers of {@link DistributedFrequentItemsetGenerator} as JVMs on
+ * this machine, all at once. Each worker runs the java executable of this JVM
+ * on its class path, and shares the standard output and error of this 
+ * process.
+ */
+class LocalWorkerRunner 
+        implements DistributedFrequentItemsetGenerator.WorkerRunner {
+
+    private final List<String> jvmOptionList;
+
+    LocalWorkerRunner() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param jvmOptionList the options passed to each worker JVM, such as
+     *                      {@code -Xmx2g}.
+     */
+    LocalWorkerRunner(List<String> jvmOptionList) {
+        this.jvmOptionList = new ArrayList<>(
+                Objects.requireNonNull(jvmOptionList, 
+                                       "The JVM option list is null."));
+    }
+
+    @Override
+    public void run(List<List<String>> workerArgumentList) throws IOException {
+        String java = System.getProperty("java.home")
+                + File.separator + "bin" + File.separator + "java";
+        List<Process> processList = new ArrayList<>();
+
+        try {
+            for (List<String> argumentList : workerArgumentList) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmOptionList);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(DistributedWorker.class.getName());
+                command.addAll(argumentList);
+                processList.add(new ProcessBuilder(command).inheritIO()
+                                                           .start());
+            }
+
+            for (int w = 0; w < processList.size(); ++w) {
+                int exitCode = processList.get(w).waitFor();
+
+                if (exitCode != 0) {
+                    throw new IOException(
+                            "Worker " + w + " failed with exit code " + 
+                            exitCode + ".");
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a worker.", 
+                                  ex);
+        } finally {
+            // Leave no worker behind when one of them failed.
+            for (Process process : processList) {
+                process.destroy();
+            }
+        }
+    }
+}
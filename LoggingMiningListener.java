@@ -0,0 +1,38 @@
+package apriori;
+
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs the statistics of a mining run through {@code java.util.logging}, one
+ * record per level and one for the rules.
+ */
+class LoggingMiningListener implements MiningListener {
+
+    private final Logger logger;
+    private final Level level;
+
+    /**
+     * Logs at {@link Level#INFO} to the logger named after this class.
+     */
+    LoggingMiningListener() {
+        this(Logger.getLogger(LoggingMiningListener.class.getName()),
+             Level.INFO);
+    }
+
+    LoggingMiningListener(Logger logger, Level level) {
+        this.logger = Objects.requireNonNull(logger, "The logger is null.");
+        this.level = Objects.requireNonNull(level, "The log level is null.");
+    }
+
+    @Override
+    public void levelCompleted(LevelStatistics statistics) {
+        logger.log(level, statistics.toString());
+    }
+
+    @Override
+    public void rulesCompleted(RuleStatistics statistics) {
+        logger.log(level, statistics.toString());
+    }
+}
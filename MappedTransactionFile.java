@@ -0,0 +1,322 @@
+package apriori;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads a transaction file, one transaction per line, with the items of a
+ * line separated by delimiter characters. The file is memory-mapped and
+ * tokenized in place: each item is looked up by its raw bytes, and a String
+ * is only created the first time an item is seen. Runs of delimiters are
+ * skipped, and an item repeated within a line is counted once. Every line is
+ * a transaction, so an empty line, or one of delimiters only, is an empty
+ * transaction, just as it is in a transaction list. A line break at the end
+ * of the file does not start another line. Lines may end with CRLF.
+ */
+class MappedTransactionFile implements TransactionSource<String> {
+
+    // The delimiters of a file read without others.
+    static final String DEFAULT_DELIMITERS = " \t";
+
+    // The largest part of the file mapped at a time. Regions end at a line
+    // break, so a single line must fit in one region.
+    private static final int REGION_SIZE = 1 << 30;
+
+    private final Path path;
+    private final boolean[] delimiters = new boolean[128];
+    private final ItemDictionary<String> dictionary = new ItemDictionary<>();
+
+    // An open-addressing hash table from the bytes of an item to its entry.
+    // The bytes of entry 'e' are itemBytes[entryOffsets[e],
+    // entryOffsets[e + 1]).
+    private int[] table = new int[1024];
+    private byte[] itemBytes = new byte[4096];
+    private int[] entryOffsets = new int[257];
+    private int[] entryHashes = new int[256];
+    private int[] entryIds = new int[256];
+    private int entries;
+
+    // The items of the current transaction, and, per item id, the number of
+    // the last transaction the item was added to.
+    private int[] transaction = new int[64];
+    private int[] stamps = new int[256];
+    private int stamp;
+
+    /**
+     * Reads a file whose items are separated by spaces or tabs.
+     */
+    MappedTransactionFile(Path path) {
+        this(path, DEFAULT_DELIMITERS);
+    }
+
+    /**
+     * Reads a file whose items are separated by any of the characters in
+     * {@code delimiters}. Line breaks always end a transaction.
+     */
+    MappedTransactionFile(Path path, String delimiters) {
+        this.path = path;
+
+        for (char c : delimiters.toCharArray()) {
+            if (c >= 128) {
+                throw new IllegalArgumentException(
+                        "The delimiter is not an ASCII character: " + c);
+            }
+
+            this.delimiters[c] = true;
+        }
+
+        this.delimiters['\r'] = true;
+        Arrays.fill(table, -1);
+    }
+
+    /**
+     * Splits a line read elsewhere, such as from a stream, into its items,
+     * as a line of a file whose items are separated by spaces or tabs is
+     * split. A line of delimiters only is an empty transaction.
+     */
+    static Set<String> tokenize(String line) {
+        Set<String> ret = new HashSet<>();
+        int tokenStart = -1;
+
+        for (int i = 0; i <= line.length(); ++i) {
+            if (i == line.length() || isDefaultDelimiter(line.charAt(i))) {
+                if (tokenStart >= 0) {
+                    ret.add(line.substring(tokenStart, i));
+                    tokenStart = -1;
+                }
+            } else if (tokenStart < 0) {
+                tokenStart = i;
+            }
+        }
+
+        return ret;
+    }
+
+    private static boolean isDefaultDelimiter(char c) {
+        return c == '\r' || DEFAULT_DELIMITERS.indexOf(c) >= 0;
+    }
+
+    @Override
+    public ItemDictionary<String> getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public void scan(TransactionConsumer consumer) throws IOException {
+        Arrays.fill(stamps, -1);
+        stamp = 0;
+
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+                int regionSize = (int) Math.min(REGION_SIZE, size - position);
+                MappedByteBuffer buffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY,
+                                    position,
+                                    regionSize);
+                int end = regionSize;
+
+                if (position + regionSize < size) {
+                    // Cut the region back to its last line break.
+                    while (end > 0 && buffer.get(end - 1) != '\n') {
+                        --end;
+                    }
+
+                    if (end == 0) {
+                        throw new IOException(
+                                "A line in " + path + " is longer than " +
+                                REGION_SIZE + " bytes.");
+                    }
+                }
+
+                parse(buffer, end, consumer);
+                position += end;
+            }
+        }
+    }
+
+    private void parse(MappedByteBuffer buffer,
+                       int end,
+                       TransactionConsumer consumer) {
+        int tokenStart = -1;
+        int length = 0;
+        int lineStart = 0;
+
+        for (int i = 0; i < end; ++i) {
+            byte b = buffer.get(i);
+
+            if (b == '\n' || (b >= 0 && delimiters[b])) {
+                if (tokenStart >= 0) {
+                    length = addItem(buffer, tokenStart, i, length);
+                    tokenStart = -1;
+                }
+
+                if (b == '\n') {
+                    length = endTransaction(consumer, length);
+                    lineStart = i + 1;
+                }
+            } else if (tokenStart < 0) {
+                tokenStart = i;
+            }
+        }
+
+        // Only the last region may end without a line break, and then its
+        // last line is a transaction too.
+        if (tokenStart >= 0) {
+            length = addItem(buffer, tokenStart, end, length);
+        }
+
+        if (lineStart < end) {
+            endTransaction(consumer, length);
+        }
+    }
+
+    private int endTransaction(TransactionConsumer consumer, int length) {
+        consumer.accept(transaction, length);
+        ++stamp;
+        return 0;
+    }
+
+    /**
+     * Adds the item in bytes [start, end) of the buffer to the current
+     * transaction, unless it is already there, and returns the new length of
+     * the transaction.
+     */
+    private int addItem(MappedByteBuffer buffer, int start, int end, int length) {
+        int id = lookup(buffer, start, end);
+
+        if (id >= stamps.length) {
+            int oldLength = stamps.length;
+            stamps = Arrays.copyOf(stamps, Math.max(id + 1, 2 * oldLength));
+            Arrays.fill(stamps, oldLength, stamps.length, -1);
+        }
+
+        if (stamps[id] == stamp) {
+            return length;
+        }
+
+        stamps[id] = stamp;
+
+        if (length == transaction.length) {
+            transaction = Arrays.copyOf(transaction, 2 * length);
+        }
+
+        transaction[length] = id;
+        return length + 1;
+    }
+
+    private int lookup(MappedByteBuffer buffer, int start, int end) {
+        int hash = 0;
+
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + buffer.get(i);
+        }
+
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (table[slot] >= 0) {
+            int entry = table[slot];
+
+            if (entryHashes[entry] == hash
+                    && sameBytes(buffer, start, end, entry)) {
+                return entryIds[entry];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return addEntry(buffer, start, end, hash, slot);
+    }
+
+    private boolean sameBytes(MappedByteBuffer buffer,
+                              int start,
+                              int end,
+                              int entry) {
+        int offset = entryOffsets[entry];
+
+        if (entryOffsets[entry + 1] - offset != end - start) {
+            return false;
+        }
+
+        for (int i = start; i < end; ++i) {
+            if (buffer.get(i) != itemBytes[offset++]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int addEntry(MappedByteBuffer buffer,
+                         int start,
+                         int end,
+                         int hash,
+                         int slot) {
+        int offset = entryOffsets[entries];
+        int length = end - start;
+
+        if (offset + length > itemBytes.length) {
+            itemBytes = Arrays.copyOf(itemBytes,
+                                      Math.max(offset + length,
+                                               2 * itemBytes.length));
+        }
+
+        for (int i = 0; i < length; ++i) {
+            itemBytes[offset + i] = buffer.get(start + i);
+        }
+
+        if (entries + 1 == entryHashes.length) {
+            entryHashes = Arrays.copyOf(entryHashes, 2 * entries + 2);
+            entryIds = Arrays.copyOf(entryIds, 2 * entries + 2);
+            entryOffsets = Arrays.copyOf(entryOffsets, 2 * entries + 3);
+        }
+
+        int entry = entries++;
+        int id = dictionary.intern(new String(itemBytes,
+                                              offset,
+                                              length,
+                                              StandardCharsets.UTF_8));
+        entryHashes[entry] = hash;
+        entryIds[entry] = id;
+        entryOffsets[entry + 1] = offset + length;
+        table[slot] = entry;
+
+        // Keep the table at most half full.
+        if (2 * entries > table.length) {
+            rehash();
+        }
+
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[2 * table.length];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+
+        for (int entry = 0; entry < entries; ++entry) {
+            int slot = mix(entryHashes[entry]) & mask;
+
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = entry;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,307 @@
+package apriori;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmarks the mining phases on synthetic Quest data. Each phase is run a
+ * number of times to warm up, and then measured over a number of iterations;
+ * the report gives the mean time per operation, the throughput, the bytes
+ * the calling thread allocated per operation, and the collections and
+ * collection time of the garbage collectors during the measurement, much
+ * like the {@code gc} profiler of JMH.
+ *
+ * <p>Usage: {@code java apriori.MiningBenchmark [transactions [iterations]]
+ * [--warmup n] [--forks n] [--engine name]}. The defaults are T10I4D100K,
+ * 5 iterations, 2 warmup iterations and 1 fork. The benchmarks fall into
+ * groups: one per engine, apriori, eclat and fpgrowth, and the phases
+ * group, which measures candidate generation, subset counting and rule
+ * generation. Each group runs in as many JVMs of its own as there are
+ * forks, one after the other, so that the JIT state and heap left by one
+ * group do not skew the next. {@code --engine} runs only the named group,
+ * once, in this JVM. Numbers within a group share a JVM, and are best
+ * compared with each other or with the same group of another fork or run.
+ *
+ * <p>The project is built from its sources with the JDK alone, without a
+ * build tool or any other library, so the benchmarks are a plain class
+ * rather than a JMH module, which would take both.
+ *
+ * <p>Allocation is read from the JVM's per-thread counters, so it covers the
+ * calling thread only, and shows as n/a on JVMs without them. Benchmarks are
+ * run single-threaded for that reason.
+ */
+final class MiningBenchmark {
+
+    private static final double[] SUPPORTS = { 0.02, 0.01, 0.005 };
+    private static final double CONFIDENCE = 0.5;
+    private static final List<String> GROUPS =
+            Arrays.asList("apriori", "eclat", "fpgrowth", "phases");
+
+    // Consumes the benchmark results, so that the JIT cannot drop the work.
+    private static volatile int sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+
+    private MiningBenchmark(int warmupIterations, int iterations) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> argumentList = new ArrayList<>(Arrays.asList(args));
+        String group = removeOption(argumentList, "--engine");
+
+        if (group != null && !GROUPS.contains(group)) {
+            System.err.println("--engine takes one of " + GROUPS);
+            System.exit(2);
+        }
+
+        String warmup = removeOption(argumentList, "--warmup");
+        String forks = removeOption(argumentList, "--forks");
+        int warmupIterations = warmup == null ? 2 : Integer.parseInt(warmup);
+        int forkNumber = forks == null ? 1 : Integer.parseInt(forks);
+        int transactions = argumentList.size() > 0 ?
+                           Integer.parseInt(argumentList.get(0)) :
+                           100_000;
+        int iterations = argumentList.size() > 1 ?
+                         Integer.parseInt(argumentList.get(1)) :
+                         5;
+
+        if (group == null) {
+            for (String forkedGroup : GROUPS) {
+                for (int i = 0; i < forkNumber; ++i) {
+                    fork(transactions, 
+                         iterations, 
+                         warmupIterations, 
+                         forkedGroup);
+                }
+            }
+
+            return;
+        }
+
+        List<Set<String>> transactionList =
+                new QuestDataGenerator().setTransactionNumber(transactions)
+                                        .generate();
+        System.out.printf("T10I4D%d, %d warmup, %d iterations, %s%n",
+                          transactions,
+                          warmupIterations,
+                          iterations,
+                          group);
+        System.out.printf("%-36s %12s %12s %14s %8s %8s%n",
+                          "benchmark",
+                          "ms/op",
+                          "ops/s",
+                          "bytes/op",
+                          "gc",
+                          "gc ms");
+
+        MiningBenchmark benchmark = 
+                new MiningBenchmark(warmupIterations, iterations);
+
+        if (group.equals("phases")) {
+            benchmark.runPhases(transactionList);
+        } else {
+            benchmark.runEngine(group, transactionList);
+        }
+    }
+
+    /**
+     * Removes an option and its value from the arguments, and returns the
+     * value, or null if the option is not given.
+     */
+    private static String removeOption(List<String> argumentList, 
+                                       String name) {
+        int index = argumentList.indexOf(name);
+
+        if (index < 0) {
+            return null;
+        }
+
+        if (index + 1 == argumentList.size()) {
+            System.err.println(name + " takes a value");
+            System.exit(2);
+        }
+
+        String ret = argumentList.get(index + 1);
+        argumentList.subList(index, index + 2).clear();
+        return ret;
+    }
+
+    /**
+     * Runs one group in a JVM of its own, with the java executable and class
+     * path of this one, and waits for it.
+     */
+    private static void fork(int transactions, 
+                             int iterations, 
+                             int warmupIterations,
+                             String group) throws Exception {
+        String java = System.getProperty("java.home")
+                + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(
+                java,
+                "-cp",
+                System.getProperty("java.class.path"),
+                MiningBenchmark.class.getName(),
+                Integer.toString(transactions),
+                Integer.toString(iterations),
+                "--warmup",
+                Integer.toString(warmupIterations),
+                "--engine",
+                group).inheritIO().start();
+        int exitCode = process.waitFor();
+
+        if (exitCode != 0) {
+            throw new IllegalStateException(
+                    "The " + group + " benchmarks failed with exit code " +
+                    exitCode + ".");
+        }
+    }
+
+    private void runEngine(String engine, List<Set<String>> transactionList)
+            throws Exception {
+        Map<String, AbstractFrequentItemsetGenerator<String>> engineMap =
+                new LinkedHashMap<>();
+        engineMap.put("apriori", new AprioriFrequentItemsetGenerator<>());
+        engineMap.put("eclat", new EclatFrequentItemsetGenerator<>());
+        engineMap.put("fpgrowth", new FPGrowthFrequentItemsetGenerator<>());
+        AbstractFrequentItemsetGenerator<String> generator =
+                engineMap.get(engine);
+
+        for (double support : SUPPORTS) {
+            measure("generate/" + engine + "/" + support,
+                    () -> generator.generate(transactionList, support)
+                                   .getFrequentItemsetList()
+                                   .size());
+        }
+    }
+
+    private void runPhases(List<Set<String>> transactionList)
+            throws Exception {
+        TransactionDatabase<String> database =
+                TransactionDatabase.encode(transactionList);
+
+        for (double support : SUPPORTS) {
+            FrequentItemsetData<String> data =
+                    new AprioriFrequentItemsetGenerator<String>()
+                            .generate(transactionList, support);
+            Map<Integer, List<int[]>> levelMap =
+                    encodeLevels(data, database.getDictionary());
+
+            for (int k = 1; levelMap.containsKey(k); ++k) {
+                List<int[]> itemsetList = levelMap.get(k);
+                List<int[]> candidateList =
+                        CandidateGenerator.generateCandidates(itemsetList);
+
+                if (candidateList.isEmpty()) {
+                    break;
+                }
+
+                measure("generateCandidates/" + support + "/k=" + (k + 1),
+                        () -> CandidateGenerator.generateCandidates(
+                                itemsetList).size());
+                measure("subset/" + support + "/k=" + (k + 1),
+                        () -> {
+                            CandidateTrie candidateTrie =
+                                    new CandidateTrie(candidateList);
+
+                            for (int[] transaction
+                                    : database.getTransactions()) {
+                                candidateTrie.count(transaction,
+                                                    0,
+                                                    transaction.length,
+                                                    1);
+                            }
+
+                            return candidateTrie.getSupportCount(0);
+                        });
+            }
+
+            AssociationRuleGenerator<String> ruleGenerator =
+                    new AssociationRuleGenerator<>();
+            measure("mineAssociationRules/" + support,
+                    () -> ruleGenerator.mineAssociationRules(data, CONFIDENCE)
+                                       .size());
+        }
+    }
+
+    /**
+     * Encodes the frequent itemsets with the ids of the input dictionary, and
+     * groups them by size, each group in lexicographic order.
+     */
+    private static Map<Integer, List<int[]>>
+        encodeLevels(FrequentItemsetData<String> data,
+                     ItemDictionary<String> dictionary) {
+        Map<Integer, List<int[]>> ret = new HashMap<>();
+
+        for (Set<String> itemset : data.getFrequentItemsetList()) {
+            ret.computeIfAbsent(itemset.size(), k -> new ArrayList<>())
+               .add(dictionary.encode(itemset));
+        }
+
+        for (List<int[]> itemsetList : ret.values()) {
+            itemsetList.sort(CandidateGenerator.ITEMSET_COMPARATOR);
+        }
+
+        return ret;
+    }
+
+    private void measure(String name, Callable<Integer> task)
+            throws Exception {
+        for (int i = 0; i < warmupIterations; ++i) {
+            sink += task.call();
+        }
+
+        long[] gcBefore = collections();
+        long allocatedBefore = AllocationCounter.allocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; ++i) {
+            sink += task.call();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = AllocationCounter.allocatedBytes();
+        long[] gcAfter = collections();
+        double millisPerOperation = elapsed / 1e6 / iterations;
+        String bytesPerOperation =
+                allocatedBefore < 0 || allocatedAfter < 0 ?
+                "n/a" :
+                Long.toString((allocatedAfter - allocatedBefore) / iterations);
+
+        System.out.printf("%-36s %12.3f %12.2f %14s %8d %8d%n",
+                          name,
+                          millisPerOperation,
+                          1000.0 / millisPerOperation,
+                          bytesPerOperation,
+                          gcAfter[0] - gcBefore[0],
+                          gcAfter[1] - gcBefore[1]);
+    }
+
+    /**
+     * Returns the number of collections so far, and their time in
+     * milliseconds, summed over all garbage collectors.
+     */
+    private static long[] collections() {
+        long[] ret = new long[2];
+
+        for (GarbageCollectorMXBean bean 
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // A collector that does not count reports -1.
+            ret[0] += Math.max(0, bean.getCollectionCount());
+            ret[1] += Math.max(0, bean.getCollectionTime());
+        }
+
+        return ret;
+    }
+}
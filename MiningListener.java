@@ -0,0 +1,178 @@
+package apriori;
+
+/**
+ * Receives the progress of a mining run. An engine calls its listener on the
+ * mining thread after each level of the itemset search, and a rule generator
+ * calls it once all rules are generated. Engines without a listener skip the
+ * measurements altogether.
+ */
+interface MiningListener {
+
+    /**
+     * Called after the candidates of a level were counted.
+     */
+    default void levelCompleted(LevelStatistics statistics) {}
+
+    /**
+     * Called after the association rules were generated.
+     */
+    default void rulesCompleted(RuleStatistics statistics) {}
+
+    /**
+     * The measurements of one level of the itemset search.
+     */
+    final class LevelStatistics {
+
+        private final int level;
+        private final int candidates;
+        private final int prunedCandidates;
+        private final int frequentItemsets;
+        private final int scannedTransactions;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+
+        LevelStatistics(int level,
+                        int candidates,
+                        int prunedCandidates,
+                        int frequentItemsets,
+                        int scannedTransactions,
+                        long elapsedNanos,
+                        long allocatedBytes) {
+            this.level = level;
+            this.candidates = candidates;
+            this.prunedCandidates = prunedCandidates;
+            this.frequentItemsets = frequentItemsets;
+            this.scannedTransactions = scannedTransactions;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Returns the size of the itemsets of this level.
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Returns the number of candidates that were counted.
+         */
+        public int getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * Returns the number of joined candidates that were dropped without
+         * counting, because one of their subsets is not frequent.
+         */
+        public int getPrunedCandidates() {
+            return prunedCandidates;
+        }
+
+        /**
+         * Returns the number of candidates that turned out frequent.
+         */
+        public int getFrequentItemsets() {
+            return frequentItemsets;
+        }
+
+        /**
+         * Returns the number of distinct transactions the candidates were
+         * counted in, which shrinks as transactions are trimmed. Duplicate
+         * transactions are counted once, as they are scanned once.
+         */
+        public int getScannedTransactions() {
+            return scannedTransactions;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the bytes the mining thread allocated for this level, or -1
+         * if the JVM does not count them. Helper threads are not included.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "level " + level + ": " + 
+                   candidates + " candidates, " +
+                   prunedCandidates + " pruned, " +
+                   frequentItemsets + " frequent, " +
+                   scannedTransactions + " transactions scanned, " +
+                   elapsedNanos / 1_000_000 + " ms, " +
+                   allocatedBytes + " bytes allocated";
+        }
+    }
+
+    /**
+     * The measurements of a rule generation run.
+     */
+    final class RuleStatistics {
+
+        private final int itemsets;
+        private final long testedRules;
+        private final int rules;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+
+        RuleStatistics(int itemsets,
+                       long testedRules,
+                       int rules,
+                       long elapsedNanos,
+                       long allocatedBytes) {
+            this.itemsets = itemsets;
+            this.testedRules = testedRules;
+            this.rules = rules;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Returns the number of frequent itemsets rules were generated from.
+         */
+        public int getItemsets() {
+            return itemsets;
+        }
+
+        /**
+         * Returns the number of rules whose confidence was computed.
+         */
+        public long getTestedRules() {
+            return testedRules;
+        }
+
+        /**
+         * Returns the number of rules that were confident enough.
+         */
+        public int getRules() {
+            return rules;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the bytes the calling thread allocated, or -1 if the JVM 
+         * does not count them. Helper threads are not included.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "rules: " +
+                   itemsets + " itemsets, " +
+                   testedRules + " rules tested, " +
+                   rules + " confident, " +
+                   elapsedNanos / 1_000_000 + " ms, " +
+                   allocatedBytes + " bytes allocated";
+        }
+    }
+}
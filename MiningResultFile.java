@@ -0,0 +1,811 @@
+package apriori;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A read-only, memory-mapped view of mined itemsets and rules written with
+ * {@link #write(Path, FrequentItemsetData, List)}. Opening a file maps its
+ * sections and checks their sizes; nothing else is read onto the heap. Items,
+ * itemsets and rules are only decoded when asked for.
+ *
+ * <p>The file is big-endian. After a fixed header, it holds the following
+ * sections, each a flat array:
+ * <pre>
+ *   header:         magic, version, transaction number, minimum support,
+ *                   itemset mode ordinal, complete flag, the number of
+ *                   listed itemsets, and the item, itemset and rule numbers
+ *                   that size the sections below
+ *   item offsets:   int[items + 1], where item i is the UTF-8 string in
+ *                   item bytes [offsets[i], offsets[i + 1])
+ *   item bytes:     the items, sorted by their bytes, padded to 4 bytes
+ *   itemset offsets: int[itemsets + 1] into the itemset items
+ *   itemset counts: int[itemsets], the support counts
+ *   itemset flags:  int[itemsets], {@link #LISTED} if the itemset is in the
+ *                   frequent itemset list of the result, and
+ *                   {@link #FREQUENT} if it reaches the minimum support
+ *   itemset items:  int[], each itemset as sorted item ids; the itemsets
+ *                   are sorted lexicographically
+ *   rule offsets:   int[rules + 1] into the rule items
+ *   rule antecedent sizes: int[rules]
+ *   rule confidences: double[rules]
+ *   rule items:     int[], each rule as its sorted antecedent followed by
+ *                   its sorted consequent
+ * </pre>
+ * Each section is mapped on its own, so a file may be larger than 2 GB as
+ * long as every section is smaller. Only String items are supported.
+ *
+ * <p>The itemsets are those whose support count the result stores: besides
+ * the listed ones, the non-maximal frequent itemsets of a maximal result,
+ * and the infrequent itemsets a run was asked to retain. A closed result
+ * stores its closed itemsets only, and the loader derives the support of
+ * any other frequent itemset from them, as the result itself does.
+ */
+final class MiningResultFile {
+
+    static final int MAGIC = 0x41505249; // "APRI"
+    static final int VERSION = 2;
+
+    // The itemset flags.
+    static final int LISTED = 1;
+    static final int FREQUENT = 2;
+
+    // The magic, version, transaction number, minimum support, mode,
+    // complete flag, listed itemset number, and the six lengths that size
+    // the sections.
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 3 * 4 + 6 * 4;
+
+    private final int transactionNumber;
+    private final double minimumSupport;
+    private final ItemsetMode itemsetMode;
+    private final boolean complete;
+    private final int listedItemsetNumber;
+    private final int itemNumber;
+    private final int itemsetNumber;
+    private final int ruleNumber;
+
+    private final ByteBuffer itemOffsets;
+    private final ByteBuffer itemBytes;
+    private final ByteBuffer itemsetOffsets;
+    private final ByteBuffer itemsetCounts;
+    private final ByteBuffer itemsetFlags;
+    private final ByteBuffer itemsetItems;
+    private final ByteBuffer ruleOffsets;
+    private final ByteBuffer ruleAntecedentSizes;
+    private final ByteBuffer ruleConfidences;
+    private final ByteBuffer ruleItems;
+
+    private MiningResultFile(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+
+        if (fileSize < HEADER_SIZE) {
+            throw new IOException("The file is too short for the header.");
+        }
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY,
+                                        0,
+                                        HEADER_SIZE);
+
+        if (header.getInt() != MAGIC) {
+            throw new IOException("The file is not a mining result file.");
+        }
+
+        int version = header.getInt();
+
+        if (version != VERSION) {
+            throw new IOException(
+                    "Unsupported file version: " + version + ", " +
+                    "should be " + VERSION);
+        }
+
+        this.transactionNumber = header.getInt();
+        this.minimumSupport = header.getDouble();
+        int mode = header.getInt();
+        int completeFlag = header.getInt();
+        this.listedItemsetNumber = header.getInt();
+        this.itemNumber = header.getInt();
+        int itemByteLength = header.getInt();
+        this.itemsetNumber = header.getInt();
+        int itemsetItemNumber = header.getInt();
+        this.ruleNumber = header.getInt();
+        int ruleItemNumber = header.getInt();
+
+        if (itemNumber < 0 || itemByteLength < 0 || itemsetNumber < 0
+                || itemsetItemNumber < 0 || ruleNumber < 0
+                || ruleItemNumber < 0 
+                || mode < 0 || mode >= ItemsetMode.values().length
+                || (completeFlag != 0 && completeFlag != 1)
+                || listedItemsetNumber < 0 
+                || listedItemsetNumber > itemsetNumber) {
+            throw new IOException("The file header is corrupt.");
+        }
+
+        this.itemsetMode = ItemsetMode.values()[mode];
+        this.complete = completeFlag == 1;
+
+        long[] position = { HEADER_SIZE };
+        this.itemOffsets =
+                map(channel, position, 4L * (itemNumber + 1), fileSize);
+        this.itemBytes = map(channel,
+                             position,
+                             padding(itemByteLength),
+                             fileSize);
+        this.itemsetOffsets =
+                map(channel, position, 4L * (itemsetNumber + 1), fileSize);
+        this.itemsetCounts =
+                map(channel, position, 4L * itemsetNumber, fileSize);
+        this.itemsetFlags =
+                map(channel, position, 4L * itemsetNumber, fileSize);
+        this.itemsetItems =
+                map(channel, position, 4L * itemsetItemNumber, fileSize);
+        this.ruleOffsets =
+                map(channel, position, 4L * (ruleNumber + 1), fileSize);
+        this.ruleAntecedentSizes =
+                map(channel, position, 4L * ruleNumber, fileSize);
+        this.ruleConfidences =
+                map(channel, position, 8L * ruleNumber, fileSize);
+        this.ruleItems =
+                map(channel, position, 4L * ruleItemNumber, fileSize);
+
+        if (position[0] != fileSize) {
+            throw new IOException(
+                    "The file has " + (fileSize - position[0]) + " " +
+                    "trailing bytes.");
+        }
+    }
+
+    /**
+     * Maps the file for reading. The file may be closed and its mapping
+     * still used; it must not be modified while mapped.
+     */
+    static MiningResultFile open(Path path) throws IOException {
+        Objects.requireNonNull(path, "The path is null.");
+
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ)) {
+            return new MiningResultFile(channel);
+        }
+    }
+
+    /**
+     * Writes the input itemsets, with every support count their data holds,
+     * flagged as listed or not, and rules to a file, along with the mode and
+     * completeness of the result.
+     *
+     * @param path     the file to write.
+     * @param data     the mined itemsets.
+     * @param ruleList the rules mined from {@code data}, or any other rules
+     *                 over the same items; written in list order.
+     */
+    static void write(Path path,
+                      FrequentItemsetData<String> data,
+                      List<AssociationRule<String>> ruleList)
+            throws IOException {
+        Objects.requireNonNull(path, "The path is null.");
+        Objects.requireNonNull(data, "The frequent itemset data is null.");
+        Objects.requireNonNull(ruleList, "The rule list is null.");
+
+        // Number the items in the order of their bytes, so that the loader can
+        // look items up by binary search.
+        Map<String, Integer> idMap = new HashMap<>();
+
+        for (Set<String> itemset : data.getSupportCountMap().keySet()) {
+            addItems(itemset, idMap);
+        }
+
+        for (AssociationRule<String> rule : ruleList) {
+            addItems(rule.getAntecedent(), idMap);
+            addItems(rule.getConsequent(), idMap);
+        }
+
+        String[] itemArray = idMap.keySet().toArray(new String[0]);
+        byte[][] itemByteArray = new byte[itemArray.length][];
+
+        for (int i = 0; i < itemArray.length; ++i) {
+            itemByteArray[i] = itemArray[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        Arrays.sort(itemByteArray, MiningResultFile::compareBytes);
+        long itemByteLength = 0;
+
+        for (int i = 0; i < itemByteArray.length; ++i) {
+            idMap.put(new String(itemByteArray[i], StandardCharsets.UTF_8), i);
+            itemByteLength += itemByteArray[i].length;
+        }
+
+        List<Map.Entry<int[], Integer>> itemsetList = new ArrayList<>();
+        long itemsetItemNumber = 0;
+
+        for (Map.Entry<Set<String>, Integer> entry
+                : data.getSupportCountMap().entrySet()) {
+            int[] itemset = encode(entry.getKey(), idMap);
+            itemsetList.add(new AbstractMap.SimpleImmutableEntry<>(
+                    itemset,
+                    entry.getValue()));
+            itemsetItemNumber += itemset.length;
+        }
+
+        // The listed itemsets are flagged by merging them, in the same order,
+        // with the stored ones.
+        List<int[]> listedList = new ArrayList<>();
+
+        for (Set<String> itemset : data.getFrequentItemsetList()) {
+            listedList.add(encode(itemset, idMap));
+        }
+
+        listedList.sort(MiningResultFile::compareItemsets);
+        itemsetList.sort((entry1, entry2) ->
+                compareItemsets(entry1.getKey(), entry2.getKey()));
+        long ruleItemNumber = 0;
+
+        for (AssociationRule<String> rule : ruleList) {
+            ruleItemNumber += rule.getAntecedent().size()
+                            + rule.getConsequent().size();
+        }
+
+        checkSectionSize(padding(itemByteLength));
+        checkSectionSize(4L * (itemsetList.size() + 1));
+        checkSectionSize(4L * itemsetItemNumber);
+        checkSectionSize(8L * ruleList.size());
+        checkSectionSize(4L * ruleItemNumber);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(data.getTransactionNumber());
+            out.writeDouble(data.getMinimumSupport());
+            out.writeInt(data.getItemsetMode().ordinal());
+            out.writeInt(data.isComplete() ? 1 : 0);
+            out.writeInt(listedList.size());
+            out.writeInt(itemByteArray.length);
+            out.writeInt((int) itemByteLength);
+            out.writeInt(itemsetList.size());
+            out.writeInt((int) itemsetItemNumber);
+            out.writeInt(ruleList.size());
+            out.writeInt((int) ruleItemNumber);
+
+            int offset = 0;
+            out.writeInt(offset);
+
+            for (byte[] bytes : itemByteArray) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+
+            for (byte[] bytes : itemByteArray) {
+                out.write(bytes);
+            }
+
+            for (long i = itemByteLength; i < padding(itemByteLength); ++i) {
+                out.writeByte(0);
+            }
+
+            offset = 0;
+            out.writeInt(offset);
+
+            for (Map.Entry<int[], Integer> entry : itemsetList) {
+                offset += entry.getKey().length;
+                out.writeInt(offset);
+            }
+
+            for (Map.Entry<int[], Integer> entry : itemsetList) {
+                out.writeInt(entry.getValue());
+            }
+
+            int listedIndex = 0;
+
+            for (Map.Entry<int[], Integer> entry : itemsetList) {
+                int flags = 0;
+
+                while (listedIndex < listedList.size()
+                        && compareItemsets(listedList.get(listedIndex),
+                                           entry.getKey()) < 0) {
+                    ++listedIndex;
+                }
+
+                if (listedIndex < listedList.size()
+                        && compareItemsets(listedList.get(listedIndex),
+                                           entry.getKey()) == 0) {
+                    flags |= LISTED;
+                }
+
+                if (AbstractFrequentItemsetGenerator.isFrequent(
+                        entry.getValue(),
+                        data.getTransactionNumber(),
+                        data.getMinimumSupport())) {
+                    flags |= FREQUENT;
+                }
+
+                out.writeInt(flags);
+            }
+
+            for (Map.Entry<int[], Integer> entry : itemsetList) {
+                for (int item : entry.getKey()) {
+                    out.writeInt(item);
+                }
+            }
+
+            offset = 0;
+            out.writeInt(offset);
+
+            for (AssociationRule<String> rule : ruleList) {
+                offset += rule.getAntecedent().size()
+                        + rule.getConsequent().size();
+                out.writeInt(offset);
+            }
+
+            for (AssociationRule<String> rule : ruleList) {
+                out.writeInt(rule.getAntecedent().size());
+            }
+
+            for (AssociationRule<String> rule : ruleList) {
+                out.writeDouble(rule.getConfidence());
+            }
+
+            for (AssociationRule<String> rule : ruleList) {
+                for (int item : encode(rule.getAntecedent(), idMap)) {
+                    out.writeInt(item);
+                }
+
+                for (int item : encode(rule.getConsequent(), idMap)) {
+                    out.writeInt(item);
+                }
+            }
+        }
+    }
+
+    public int getTransactionNumber() {
+        return transactionNumber;
+    }
+
+    public double getMinimumSupport() {
+        return minimumSupport;
+    }
+
+    /**
+     * Returns the mode of the result: in the closed and maximal modes, only
+     * the closed or maximal frequent itemsets are listed.
+     */
+    public ItemsetMode getItemsetMode() {
+        return itemsetMode;
+    }
+
+    /**
+     * Tells whether the result held all frequent itemsets, or was cut short
+     * by a budget, or a sample without its second pass.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the number of itemsets in the frequent itemset list of the
+     * result.
+     */
+    public int getListedItemsetNumber() {
+        return listedItemsetNumber;
+    }
+
+    public int getItemNumber() {
+        return itemNumber;
+    }
+
+    public int getItemsetNumber() {
+        return itemsetNumber;
+    }
+
+    public int getRuleNumber() {
+        return ruleNumber;
+    }
+
+    /**
+     * Decodes the item with the input id. Ids follow the byte order of the
+     * items.
+     */
+    public String getItem(int id) {
+        checkIndex(id, itemNumber, "item");
+        int start = itemOffsets.getInt(4 * id);
+        int end = itemOffsets.getInt(4 * id + 4);
+        byte[] bytes = new byte[end - start];
+
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = itemBytes.get(start + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the id of the input item, or -1 if the file does not hold it.
+     */
+    public int getItemId(String item) {
+        byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = itemNumber - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int cmp = compareItem(middle, bytes);
+
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getItemsetSize(int itemset) {
+        checkIndex(itemset, itemsetNumber, "itemset");
+        return itemsetOffsets.getInt(4 * itemset + 4)
+             - itemsetOffsets.getInt(4 * itemset);
+    }
+
+    /**
+     * Returns the id of the {@code index}th smallest item of an itemset.
+     */
+    public int getItemsetItem(int itemset, int index) {
+        checkIndex(index, getItemsetSize(itemset), "itemset item");
+        return itemsetItems.getInt(
+                4 * (itemsetOffsets.getInt(4 * itemset) + index));
+    }
+
+    public int getItemsetSupportCount(int itemset) {
+        checkIndex(itemset, itemsetNumber, "itemset");
+        return itemsetCounts.getInt(4 * itemset);
+    }
+
+    /**
+     * Tells whether an itemset is in the frequent itemset list of the
+     * result, rather than only having its support stored.
+     */
+    public boolean isItemsetListed(int itemset) {
+        checkIndex(itemset, itemsetNumber, "itemset");
+        return (itemsetFlags.getInt(4 * itemset) & LISTED) != 0;
+    }
+
+    /**
+     * Tells whether an itemset reaches the minimum support.
+     */
+    public boolean isItemsetFrequent(int itemset) {
+        checkIndex(itemset, itemsetNumber, "itemset");
+        return (itemsetFlags.getInt(4 * itemset) & FREQUENT) != 0;
+    }
+
+    /**
+     * Returns the support count of the itemset made of the first
+     * {@code length} ids of the input array, which must be sorted, or -1 if
+     * it is not known. In a closed result, the support of a frequent itemset
+     * that is not stored is the largest one of its stored supersets, which
+     * a walk over the sorted itemsets finds, as over a prefix trie.
+     * Allocates nothing.
+     */
+    public int getSupportCount(int[] itemIds, int length) {
+        int supportCount = findSupportCount(itemIds, length);
+
+        if (supportCount >= 0 || itemsetMode != ItemsetMode.CLOSED) {
+            return supportCount;
+        }
+
+        return maximumSupersetCount(0, itemsetNumber, 0, itemIds, 0, length);
+    }
+
+    /**
+     * Returns the largest support count among the stored supersets of
+     * {@code itemIds[matched, length)} in the itemsets
+     * {@code [low, high)}, which all share their first {@code depth} items,
+     * or -1 if there are none. The itemsets are sorted, so those sharing one
+     * more item form a run, like the subtrie of a prefix trie node.
+     */
+    private int maximumSupersetCount(int low,
+                                     int high,
+                                     int depth,
+                                     int[] itemIds,
+                                     int matched,
+                                     int length) {
+        if (low < high && itemsetSize(low) == depth) {
+            if (matched == length) {
+                // Any other itemset of the run is a superset of this one,
+                // and cannot have a larger support.
+                return itemsetCounts.getInt(4 * low);
+            }
+
+            ++low;
+        }
+
+        int ret = -1;
+
+        while (low < high) {
+            int item = itemsetItem(low, depth);
+
+            if (matched < length && item > itemIds[matched]) {
+                // None of the rest of the runs can hold the missing item.
+                break;
+            }
+
+            int end = runEnd(low, high, depth, item);
+            int next = matched < length && item == itemIds[matched] ?
+                       matched + 1 :
+                       matched;
+            ret = Math.max(ret,
+                           maximumSupersetCount(low,
+                                                end,
+                                                depth + 1,
+                                                itemIds,
+                                                next,
+                                                length));
+            low = end;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the end of the run of itemsets in {@code [low, high)} whose
+     * item at {@code depth} is the input one.
+     */
+    private int runEnd(int low, int high, int depth, int item) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (itemsetItem(middle, depth) <= item) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int itemsetSize(int itemset) {
+        return itemsetOffsets.getInt(4 * itemset + 4)
+             - itemsetOffsets.getInt(4 * itemset);
+    }
+
+    private int itemsetItem(int itemset, int index) {
+        return itemsetItems.getInt(
+                4 * (itemsetOffsets.getInt(4 * itemset) + index));
+    }
+
+    private int findSupportCount(int[] itemIds, int length) {
+        int low = 0;
+        int high = itemsetNumber - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int cmp = compareItemset(middle, itemIds, length);
+
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return itemsetCounts.getInt(4 * middle);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the support count of the input itemset, or -1 if it is not
+     * known.
+     */
+    public int getSupportCount(Set<String> itemset) {
+        int[] itemIds = new int[itemset.size()];
+        int index = 0;
+
+        for (String item : itemset) {
+            int id = getItemId(item);
+
+            if (id < 0) {
+                return -1;
+            }
+
+            itemIds[index++] = id;
+        }
+
+        Arrays.sort(itemIds);
+        return getSupportCount(itemIds, itemIds.length);
+    }
+
+    public int getRuleAntecedentSize(int rule) {
+        checkIndex(rule, ruleNumber, "rule");
+        return ruleAntecedentSizes.getInt(4 * rule);
+    }
+
+    public int getRuleConsequentSize(int rule) {
+        checkIndex(rule, ruleNumber, "rule");
+        return ruleOffsets.getInt(4 * rule + 4)
+             - ruleOffsets.getInt(4 * rule)
+             - ruleAntecedentSizes.getInt(4 * rule);
+    }
+
+    /**
+     * Returns the id of the {@code index}th smallest item of the antecedent
+     * of a rule.
+     */
+    public int getRuleAntecedentItem(int rule, int index) {
+        checkIndex(index, getRuleAntecedentSize(rule), "antecedent item");
+        return ruleItems.getInt(4 * (ruleOffsets.getInt(4 * rule) + index));
+    }
+
+    /**
+     * Returns the id of the {@code index}th smallest item of the consequent
+     * of a rule.
+     */
+    public int getRuleConsequentItem(int rule, int index) {
+        checkIndex(index, getRuleConsequentSize(rule), "consequent item");
+        return ruleItems.getInt(4 * (ruleOffsets.getInt(4 * rule)
+                                     + ruleAntecedentSizes.getInt(4 * rule)
+                                     + index));
+    }
+
+    public double getRuleConfidence(int rule) {
+        checkIndex(rule, ruleNumber, "rule");
+        return ruleConfidences.getDouble(8 * rule);
+    }
+
+    /**
+     * Decodes a rule onto the heap.
+     */
+    public AssociationRule<String> getRule(int rule) {
+        Set<String> antecedent = new HashSet<>();
+        Set<String> consequent = new HashSet<>();
+
+        for (int i = 0; i < getRuleAntecedentSize(rule); ++i) {
+            antecedent.add(getItem(getRuleAntecedentItem(rule, i)));
+        }
+
+        for (int i = 0; i < getRuleConsequentSize(rule); ++i) {
+            consequent.add(getItem(getRuleConsequentItem(rule, i)));
+        }
+
+        return new AssociationRule<>(antecedent,
+                                     consequent,
+                                     getRuleConfidence(rule));
+    }
+
+    private int compareItem(int id, byte[] bytes) {
+        int start = itemOffsets.getInt(4 * id);
+        int length = itemOffsets.getInt(4 * id + 4) - start;
+        int common = Math.min(length, bytes.length);
+
+        for (int i = 0; i < common; ++i) {
+            int cmp = Integer.compare(itemBytes.get(start + i) & 0xff,
+                                      bytes[i] & 0xff);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(length, bytes.length);
+    }
+
+    private int compareItemset(int itemset, int[] itemIds, int length) {
+        int start = itemsetOffsets.getInt(4 * itemset);
+        int size = itemsetOffsets.getInt(4 * itemset + 4) - start;
+        int common = Math.min(size, length);
+
+        for (int i = 0; i < common; ++i) {
+            int cmp = Integer.compare(itemsetItems.getInt(4 * (start + i)),
+                                      itemIds[i]);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(size, length);
+    }
+
+    private static ByteBuffer map(FileChannel channel,
+                                  long[] position,
+                                  long size,
+                                  long fileSize) throws IOException {
+        if (size > Integer.MAX_VALUE || position[0] + size > fileSize) {
+            throw new IOException("The file is truncated or corrupt.");
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                                              position[0],
+                                              size);
+        position[0] += size;
+        return buffer;
+    }
+
+    private static void addItems(Set<String> itemset,
+                                 Map<String, Integer> idMap) {
+        for (String item : itemset) {
+            idMap.putIfAbsent(item, -1);
+        }
+    }
+
+    private static int[] encode(Set<String> itemset,
+                                Map<String, Integer> idMap) {
+        int[] ret = new int[itemset.size()];
+        int index = 0;
+
+        for (String item : itemset) {
+            ret[index++] = idMap.get(item);
+        }
+
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Orders itemsets lexicographically, with a proper prefix coming first.
+     */
+    private static int compareItemsets(int[] itemset1, int[] itemset2) {
+        int common = Math.min(itemset1.length, itemset2.length);
+
+        for (int i = 0; i < common; ++i) {
+            int cmp = Integer.compare(itemset1[i], itemset2[i]);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(itemset1.length, itemset2.length);
+    }
+
+    private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+        int common = Math.min(bytes1.length, bytes2.length);
+
+        for (int i = 0; i < common; ++i) {
+            int cmp = Integer.compare(bytes1[i] & 0xff, bytes2[i] & 0xff);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(bytes1.length, bytes2.length);
+    }
+
+    private static long padding(long byteLength) {
+        return (byteLength + 3) & ~3L;
+    }
+
+    private static void checkSectionSize(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "A file section is too large: " + size + " bytes, " +
+                    "should be at most " + Integer.MAX_VALUE);
+        }
+    }
+
+    private static void checkIndex(int index, int size, String name) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "The " + name + " index is out of range: " + index +
+                    ", should be in [0, " + size + ")");
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package apriori;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Mines data sets larger than the heap with the partition algorithm of
+ * Savasere et al. The first scan of the source cuts it into partitions that
+ * fit into the memory budget, and mines each partition on its own at the same
+ * relative minimum support. An itemset that is frequent in the whole data set
+ * is frequent in at least one partition, so the union of the local results
+ * holds every frequent itemset. The second scan streams the source once more
+ * and counts the global support of that union.
+ *
+ * <p>The budget bounds the transactions held in memory at a time, and is
+ * estimated from their encoded size. The candidates collected from the
+ * partitions are kept in memory on top of it, encoded and grouped by size,
+ * ready for a candidate trie.
+ *
+ * <p>The local generator must return every frequent itemset of a partition,
+ * so one that mines closed or maximal itemsets, the top K, or itemsets up to
+ * a maximum length is rejected, and so is an incomplete local result.
+ *
+ * @param <I> the actual item type.
+ */
+class PartitionFrequentItemsetGenerator<I>
+        implements FrequentItemsetGenerator<I> {
+
+    // The approximate heap size of an int[] transaction, without its items:
+    // the array header plus the reference to it.
+    private static final int TRANSACTION_OVERHEAD = 24;
+
+    private final long memoryBudget;
+    private final FrequentItemsetGenerator<I> localGenerator;
+
+    /**
+     * Mines the partitions with Apriori.
+     *
+     * @param memoryBudget the heap, in bytes, that the transactions of one
+     *                     partition may take, including their encoded copy.
+     */
+    PartitionFrequentItemsetGenerator(long memoryBudget) {
+        this(memoryBudget, new AprioriFrequentItemsetGenerator<>());
+    }
+
+    /**
+     * Mines the partitions with the input generator.
+     *
+     * @param memoryBudget   the heap, in bytes, that the transactions of one
+     *                       partition may take, including their encoded copy.
+     * @param localGenerator the engine mining each partition; it must return
+     *                       all frequent itemsets.
+     */
+    PartitionFrequentItemsetGenerator(
+            long memoryBudget,
+            FrequentItemsetGenerator<I> localGenerator) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException(
+                    "The memory budget is too small: " + memoryBudget + ", " +
+                    "should be at least 1");
+        }
+
+        this.memoryBudget = memoryBudget;
+        this.localGenerator = Objects.requireNonNull(
+                localGenerator,
+                "The local generator is null.");
+        checkLocalGenerator(localGenerator);
+    }
+
+    @Override
+    public FrequentItemsetData<I> generate(List<Set<I>> transactionList,
+                                           double minimumSupport) {
+        Objects.requireNonNull(transactionList, "The itemset list is empty.");
+
+        try {
+            return generate(new ListTransactionSource<>(transactionList),
+                            minimumSupport);
+        } catch (IOException ex) {
+            // A list source never throws.
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public FrequentItemsetData<I> generate(TransactionSource<I> source,
+                                           double minimumSupport)
+            throws IOException {
+        Objects.requireNonNull(source, "The transaction source is null.");
+        AbstractFrequentItemsetGenerator.checkSupport(minimumSupport);
+
+        // The local generator may have been reconfigured since.
+        checkLocalGenerator(localGenerator);
+
+        // First scan: mine each partition locally, and collect the union of
+        // the local frequent itemsets.
+        PartitionMiner miner = new PartitionMiner(source, minimumSupport);
+        source.scan(miner);
+        miner.minePartition();
+
+        if (miner.transactions == 0) {
+            return null;
+        }
+
+        ItemDictionary<I> dictionary = source.getDictionary();
+        List<List<int[]>> candidateLists = new ArrayList<>();
+        List<CandidateTrie> candidateTries = new ArrayList<>();
+
+        for (List<int[]> candidateList : miner.candidateMap.values()) {
+            candidateLists.add(candidateList);
+            candidateTries.add(new CandidateTrie(candidateList));
+        }
+
+        // Second scan: count the global support of every candidate.
+        int[][] bufferHolder = { new int[16] };
+
+        source.scan((items, length) -> {
+            if (length > bufferHolder[0].length) {
+                bufferHolder[0] = new int[Math.max(length,
+                                                   2 * bufferHolder[0].length)];
+            }
+
+            int[] transaction = bufferHolder[0];
+            System.arraycopy(items, 0, transaction, 0, length);
+            Arrays.sort(transaction, 0, length);
+
+            for (CandidateTrie candidateTrie : candidateTries) {
+                candidateTrie.count(transaction, 0, length, 1);
+            }
+        });
+
+        FrequentItemsetCollector<I> collector =
+                new FrequentItemsetCollector<>(dictionary);
+
+        for (int i = 0; i < candidateLists.size(); ++i) {
+            List<int[]> candidateList = candidateLists.get(i);
+            CandidateTrie candidateTrie = candidateTries.get(i);
+
+            for (int j = 0; j < candidateList.size(); ++j) {
+                int supportCount = candidateTrie.getSupportCount(j);
+
+                if (AbstractFrequentItemsetGenerator.isFrequent(
+                        supportCount,
+                        miner.transactions,
+                        minimumSupport)) {
+                    collector.addFrequentItemset(candidateList.get(j),
+                                                 supportCount);
+                } else {
+                    collector.addSupportCount(candidateList.get(j),
+                                              supportCount);
+                }
+            }
+        }
+
+        return collector.toFrequentItemsetData(minimumSupport,
+                                               miner.transactions);
+    }
+
+    /**
+     * Rejects a local generator that may return only some of the frequent
+     * itemsets of a partition: their union would then miss globally frequent
+     * itemsets.
+     */
+    private static void checkLocalGenerator(
+            FrequentItemsetGenerator<?> localGenerator) {
+        if (!(localGenerator instanceof AbstractFrequentItemsetGenerator)) {
+            return;
+        }
+
+        AbstractFrequentItemsetGenerator<?> generator =
+                (AbstractFrequentItemsetGenerator<?>) localGenerator;
+
+        if (generator.getItemsetMode() != ItemsetMode.ALL) {
+            throw new IllegalArgumentException(
+                    "The local generator must mine all frequent itemsets, " +
+                    "not " + generator.getItemsetMode());
+        }
+
+        if (generator.getMaximumItemsetLength() != Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "The local generator must not limit the itemset " +
+                    "length: " + generator.getMaximumItemsetLength());
+        }
+
+        if (generator instanceof AprioriFrequentItemsetGenerator
+                && ((AprioriFrequentItemsetGenerator<?>) generator)
+                        .getTopK() > 0) {
+            throw new IllegalArgumentException(
+                    "The local generator must not mine the top K only: " +
+                    ((AprioriFrequentItemsetGenerator<?>) generator)
+                            .getTopK());
+        }
+    }
+
+    /**
+     * Sorts the input itemsets of one size, and removes the duplicates.
+     */
+    private static void removeDuplicates(List<int[]> itemsetList) {
+        itemsetList.sort(CandidateGenerator.ITEMSET_COMPARATOR);
+        int size = 0;
+
+        for (int[] itemset : itemsetList) {
+            if (size == 0
+                    || CandidateGenerator.ITEMSET_COMPARATOR.compare(
+                            itemsetList.get(size - 1), itemset) != 0) {
+                itemsetList.set(size++, itemset);
+            }
+        }
+
+        itemsetList.subList(size, itemsetList.size()).clear();
+    }
+
+    /**
+     * Buffers the transactions of the first scan until the budget is used
+     * up, and then mines them as one partition.
+     */
+    private final class PartitionMiner
+            implements TransactionSource.TransactionConsumer {
+
+        private final TransactionSource<I> source;
+        private final double minimumSupport;
+        // The union of the local results so far, encoded with the source
+        // dictionary and grouped by size, since a candidate trie holds
+        // itemsets of one size only. Each list is sorted and distinct.
+        private final Map<Integer, List<int[]>> candidateMap =
+                new HashMap<>();
+        private final List<int[]> partition = new ArrayList<>();
+        private long partitionBytes;
+        private int transactions;
+
+        PartitionMiner(TransactionSource<I> source, double minimumSupport) {
+            this.source = source;
+            this.minimumSupport = minimumSupport;
+        }
+
+        @Override
+        public void accept(int[] items, int length) {
+            partition.add(Arrays.copyOf(items, length));
+            ++transactions;
+
+            // Encoding the partition makes a second copy of each transaction.
+            partitionBytes += 2 * (TRANSACTION_OVERHEAD + 4L * length);
+
+            if (partitionBytes >= memoryBudget) {
+                minePartition();
+            }
+        }
+
+        void minePartition() {
+            if (partition.isEmpty()) {
+                return;
+            }
+
+            TransactionSource<I> partitionSource =
+                    new TransactionSource<I>() {
+
+                @Override
+                public void scan(TransactionConsumer consumer) {
+                    for (int[] transaction : partition) {
+                        consumer.accept(transaction, transaction.length);
+                    }
+                }
+
+                @Override
+                public ItemDictionary<I> getDictionary() {
+                    return source.getDictionary();
+                }
+            };
+
+            FrequentItemsetData<I> data;
+
+            try {
+                data = localGenerator.generate(partitionSource,
+                                               minimumSupport);
+            } catch (IOException ex) {
+                // The partition is in memory; reading it never fails.
+                throw new IllegalStateException(ex);
+            }
+
+            if (!data.isComplete()) {
+                throw new IllegalStateException(
+                        "The local generator returned an incomplete " +
+                        "result, which may miss globally frequent itemsets.");
+            }
+
+            ItemDictionary<I> dictionary = source.getDictionary();
+            Set<Integer> sizes = new HashSet<>();
+
+            for (Set<I> itemset : data.getFrequentItemsetList()) {
+                candidateMap.computeIfAbsent(itemset.size(),
+                                             k -> new ArrayList<>())
+                            .add(dictionary.encode(itemset));
+                sizes.add(itemset.size());
+            }
+
+            for (int size : sizes) {
+                removeDuplicates(candidateMap.get(size));
+            }
+
+            partition.clear();
+            partitionBytes = 0;
+        }
+    }
+}
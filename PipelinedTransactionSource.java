@@ -0,0 +1,189 @@
+package apriori;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Scans another source on a thread of its own, so that parsing the input
+ * overlaps with consuming it, such as counting the items while encoding.
+ * The parsing thread copies the transactions into batches, and hands them
+ * over through a short queue, which bounds the memory when the consumer is
+ * the slower side.
+ *
+ * <p>The dictionary of the source grows on the parsing thread, so a consumer
+ * must not use it during the scan; it is complete once the scan returns.
+ *
+ * @param <I> the actual item type.
+ */
+final class PipelinedTransactionSource<I> implements TransactionSource<I> {
+
+    // The number of item ids a batch holds, unless one transaction is longer.
+    private static final int BATCH_ITEMS = 1 << 16;
+
+    // The number of batches parsed ahead of the consumer.
+    private static final int QUEUE_CAPACITY = 4;
+
+    // Ends the batches of a scan.
+    private static final Batch END = new Batch(0);
+
+    private final TransactionSource<I> source;
+
+    PipelinedTransactionSource(TransactionSource<I> source) {
+        this.source = Objects.requireNonNull(source,
+                                             "The transaction source is null.");
+    }
+
+    @Override
+    public void scan(TransactionConsumer consumer) throws IOException {
+        Objects.requireNonNull(consumer, "The consumer is null.");
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Throwable[] failure = { null };
+        Thread parser = new Thread(() -> parse(queue, failure),
+                                   "transaction-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        try {
+            int[] items = new int[16];
+            Batch batch;
+
+            while ((batch = queue.take()) != END) {
+                int start = 0;
+
+                for (int t = 0; t < batch.size; ++t) {
+                    int length = batch.ends[t] - start;
+
+                    if (length > items.length) {
+                        items = new int[Math.max(length, 2 * items.length)];
+                    }
+
+                    System.arraycopy(batch.items, start, items, 0, length);
+                    consumer.accept(items, length);
+                    start = batch.ends[t];
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while reading the transactions.", ex);
+        } finally {
+            // Stops the parser if the consumer failed; otherwise, it is
+            // done already.
+            parser.interrupt();
+            joinUninterruptibly(parser);
+        }
+
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        } else if (failure[0] instanceof RuntimeException) {
+            throw (RuntimeException) failure[0];
+        } else if (failure[0] instanceof Error) {
+            throw (Error) failure[0];
+        }
+    }
+
+    @Override
+    public ItemDictionary<I> getDictionary() {
+        return source.getDictionary();
+    }
+
+    /**
+     * Scans the source into batches, and ends them with {@link #END}, even
+     * if the scan fails. The failure is visible to the consumer once it
+     * takes the end, or once the thread is joined.
+     */
+    private void parse(BlockingQueue<Batch> queue, Throwable[] failure) {
+        try {
+            Batch[] batch = { new Batch(BATCH_ITEMS) };
+
+            source.scan((items, length) -> {
+                if (!batch[0].add(items, length)) {
+                    put(queue, batch[0]);
+                    batch[0] = new Batch(BATCH_ITEMS);
+                    batch[0].add(items, length);
+                }
+            });
+
+            if (batch[0].size > 0) {
+                put(queue, batch[0]);
+            }
+        } catch (Throwable ex) {
+            failure[0] = ex;
+        }
+
+        try {
+            queue.put(END);
+        } catch (InterruptedException ex) {
+            // The consumer gave up, and waits for nothing more.
+        }
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException ex) {
+            // Keep the flag, so that ending the batches does not block.
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while parsing the transactions.", ex);
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Consecutive transactions, stored back to back in one array.
+     */
+    private static final class Batch {
+
+        int[] items;
+        int[] ends = new int[16];
+        int itemCount;
+        int size;
+
+        Batch(int capacity) {
+            items = new int[capacity];
+        }
+
+        /**
+         * Appends a transaction, and returns false if it does not fit. An
+         * empty batch takes a transaction of any length.
+         */
+        boolean add(int[] transaction, int length) {
+            if (itemCount + length > items.length) {
+                if (size > 0) {
+                    return false;
+                }
+
+                items = new int[length];
+            }
+
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, 2 * size);
+            }
+
+            System.arraycopy(transaction, 0, items, itemCount, length);
+            itemCount += length;
+            ends[size++] = itemCount;
+            return true;
+        }
+    }
+}
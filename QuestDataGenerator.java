@@ -0,0 +1,243 @@
+package apriori;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates synthetic market-basket data the way the IBM Quest generator of
+ * Agrawal and Srikant does. A pool of potentially frequent patterns is drawn
+ * first; each transaction is then filled with patterns picked by weight, each
+ * of them corrupted by dropping some of its items. Consecutive patterns share
+ * part of their items, which correlates them.
+ *
+ * <p>The usual names describe the parameters: T10I4D100K is an average
+ * transaction length of 10, an average pattern length of 4 and 100,000
+ * transactions. The output only depends on the parameters and the seed.
+ */
+final class QuestDataGenerator {
+
+    private int transactionNumber = 100_000;
+    private double averageTransactionLength = 10.0;
+    private double averagePatternLength = 4.0;
+    private int patternNumber = 2_000;
+    private int itemNumber = 1_000;
+    private double correlation = 0.5;
+    private double averageCorruption = 0.5;
+    private long seed = 1L;
+
+    public QuestDataGenerator setTransactionNumber(int transactionNumber) {
+        checkPositive(transactionNumber, "transaction number");
+        this.transactionNumber = transactionNumber;
+        return this;
+    }
+
+    public QuestDataGenerator
+        setAverageTransactionLength(double averageTransactionLength) {
+        checkPositive(averageTransactionLength, "average transaction length");
+        this.averageTransactionLength = averageTransactionLength;
+        return this;
+    }
+
+    public QuestDataGenerator
+        setAveragePatternLength(double averagePatternLength) {
+        checkPositive(averagePatternLength, "average pattern length");
+        this.averagePatternLength = averagePatternLength;
+        return this;
+    }
+
+    public QuestDataGenerator setPatternNumber(int patternNumber) {
+        checkPositive(patternNumber, "pattern number");
+        this.patternNumber = patternNumber;
+        return this;
+    }
+
+    public QuestDataGenerator setItemNumber(int itemNumber) {
+        checkPositive(itemNumber, "item number");
+        this.itemNumber = itemNumber;
+        return this;
+    }
+
+    /**
+     * Sets the mean fraction of the items of a pattern that are taken from
+     * the previous pattern. The default is 0.5.
+     */
+    public QuestDataGenerator setCorrelation(double correlation) {
+        checkFraction(correlation, "correlation");
+        this.correlation = correlation;
+        return this;
+    }
+
+    /**
+     * Sets the mean probability of dropping one more item of a pattern when
+     * it is put into a transaction. The default is 0.5.
+     */
+    public QuestDataGenerator setAverageCorruption(double averageCorruption) {
+        checkFraction(averageCorruption, "average corruption");
+        this.averageCorruption = averageCorruption;
+        return this;
+    }
+
+    public QuestDataGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Generates the transactions. Items are named by their number.
+     */
+    public List<Set<String>> generate() {
+        Random random = new Random(seed);
+        int[][] patterns = new int[patternNumber][];
+        double[] cumulativeWeights = new double[patternNumber];
+        double[] corruptions = new double[patternNumber];
+        double totalWeight = 0.0;
+
+        for (int p = 0; p < patternNumber; ++p) {
+            int length = Math.min(itemNumber,
+                                  Math.max(1, poisson(random,
+                                                      averagePatternLength)));
+            Set<Integer> patternSet = new HashSet<>();
+
+            if (p > 0) {
+                // Take a part of the items from the previous pattern.
+                int[] previous = patterns[p - 1];
+                double fraction = Math.min(1.0,
+                                           exponential(random, correlation));
+                int shared = Math.min(previous.length,
+                                      (int) (fraction * length + 0.5));
+
+                for (int i = 0; i < shared; ++i) {
+                    patternSet.add(previous[random.nextInt(previous.length)]);
+                }
+            }
+
+            while (patternSet.size() < length) {
+                patternSet.add(random.nextInt(itemNumber));
+            }
+
+            patterns[p] = new int[patternSet.size()];
+            int index = 0;
+
+            for (int item : patternSet) {
+                patterns[p][index++] = item;
+            }
+
+            Arrays.sort(patterns[p]);
+            totalWeight += exponential(random, 1.0);
+            cumulativeWeights[p] = totalWeight;
+            corruptions[p] = Math.min(1.0,
+                                      Math.max(0.0,
+                                               averageCorruption
+                                               + 0.1 * random.nextGaussian()));
+        }
+
+        List<Set<String>> ret = new ArrayList<>(transactionNumber);
+        int[] scratch = new int[itemNumber];
+
+        for (int t = 0; t < transactionNumber; ++t) {
+            int length = Math.min(
+                    itemNumber,
+                    Math.max(1, poisson(random, averageTransactionLength)));
+            Set<String> transaction = new HashSet<>();
+
+            while (transaction.size() < length) {
+                int p = Arrays.binarySearch(cumulativeWeights,
+                                            random.nextDouble() * totalWeight);
+                p = p >= 0 ? p : Math.min(-p - 1, patternNumber - 1);
+                int[] pattern = patterns[p];
+                int kept = pattern.length;
+
+                while (kept > 0 && random.nextDouble() < corruptions[p]) {
+                    --kept;
+                }
+
+                // A pattern that overflows the transaction is put in anyway
+                // half of the time; otherwise the transaction is complete.
+                if (!transaction.isEmpty()
+                        && transaction.size() + kept > length
+                        && random.nextBoolean()) {
+                    break;
+                }
+
+                // Keep a random 'kept' items of the pattern.
+                System.arraycopy(pattern, 0, scratch, 0, pattern.length);
+                int oldSize = transaction.size();
+
+                for (int i = 0; i < kept; ++i) {
+                    int j = i + random.nextInt(pattern.length - i);
+                    int item = scratch[j];
+                    scratch[j] = scratch[i];
+                    scratch[i] = item;
+                    transaction.add(Integer.toString(item));
+                }
+
+                if (transaction.size() == oldSize) {
+                    // The pattern added nothing new; add a random item, so
+                    // that the transaction still fills up.
+                    transaction.add(Integer.toString(
+                            random.nextInt(itemNumber)));
+                }
+            }
+
+            ret.add(transaction);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Writes the transactions to a file, one per line, with the items
+     * separated by spaces.
+     */
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer =
+                Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Set<String> transaction : generate()) {
+                writer.write(String.join(" ", transaction));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static int poisson(Random random, double mean) {
+        // Knuth's method is fine for the small means of basket data.
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int ret = 0;
+
+        while (product > limit) {
+            product *= random.nextDouble();
+            ++ret;
+        }
+
+        return ret;
+    }
+
+    private static double exponential(Random random, double mean) {
+        return -mean * Math.log(1.0 - random.nextDouble());
+    }
+
+    private static void checkPositive(double value, String name) {
+        if (!(value > 0.0)) {
+            throw new IllegalArgumentException(
+                    "The " + name + " is not positive: " + value);
+        }
+    }
+
+    private static void checkFraction(double value, String name) {
+        if (!(value >= 0.0 && value <= 1.0)) {
+            throw new IllegalArgumentException(
+                    "The " + name + " is out of range: " + value + ", " +
+                    "should be in [0, 1]");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package apriori;
+
+/**
+ * The measures association rules can be ranked by.
+ */
+enum RuleRanking {
+
+    /**
+     * The confidence of the rule, that is, the probability of the consequent
+     * given the antecedent.
+     */
+    CONFIDENCE,
+
+    /**
+     * The confidence of the rule divided by the support of its consequent. 
+     * Needs the frequent itemset data the rules were mined from.
+     */
+    LIFT
+}
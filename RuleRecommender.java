@@ -0,0 +1,451 @@
+package apriori;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recommends items for a basket out of mined association rules. A rule fires
+ * if its antecedent is a subset of the basket, and recommends every item of
+ * its consequent that is not in the basket yet. Each item is scored by the
+ * best rule recommending it, and the top items are returned.
+ *
+ * <p>The rules are indexed by one item of their antecedent: the item that
+ * occurs in the fewest antecedents. A query only visits the rules indexed by
+ * an item of the basket, and tests each of them with a merge over sorted item
+ * ids.
+ *
+ * <p>The index is immutable once built. Queries may run concurrently with
+ * each other and with {@link #update(List, FrequentItemsetData)}, which swaps
+ * in a new index atomically; each query sees either the old or the new rules,
+ * never a mix.
+ *
+ * @param <I> the actual item type.
+ */
+class RuleRecommender<I> {
+
+    /**
+     * An item recommended for a basket, with the score of the best rule that
+     * recommends it.
+     */
+    static final class Recommendation<I> {
+
+        private final I item;
+        private final double score;
+
+        Recommendation(I item, double score) {
+            this.item = item;
+            this.score = score;
+        }
+
+        public I getItem() {
+            return item;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return item + " (" + score + ")";
+        }
+    }
+
+    private final AtomicReference<Index<I>> index = new AtomicReference<>();
+
+    private final ThreadLocal<Scratch> scratch =
+            ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Indexes the input rules, without lift values.
+     */
+    RuleRecommender(List<AssociationRule<I>> ruleList) {
+        this(ruleList, null);
+    }
+
+    /**
+     * Indexes the input rules.
+     *
+     * @param ruleList the rules.
+     * @param data     the frequent itemsets the rules were mined from, which
+     *                 provide the consequent supports for lift, or null to
+     *                 rank by confidence only.
+     */
+    RuleRecommender(List<AssociationRule<I>> ruleList,
+                    FrequentItemsetData<I> data) {
+        update(ruleList, data);
+    }
+
+    /**
+     * Indexes a new set of rules and swaps it in for the current one. Queries
+     * already running finish on the old rules.
+     */
+    public void update(List<AssociationRule<I>> ruleList,
+                       FrequentItemsetData<I> data) {
+        Objects.requireNonNull(ruleList, "The rule list is null.");
+        index.set(new Index<>(ruleList, data));
+    }
+
+    /**
+     * Returns the number of rules currently indexed.
+     */
+    public int getRuleNumber() {
+        return index.get().confidences.length;
+    }
+
+    /**
+     * Returns at most {@code n} items for the input basket, best first,
+     * ranked by confidence.
+     */
+    public List<Recommendation<I>> recommend(Set<I> basket, int n) {
+        return recommend(basket, n, RuleRanking.CONFIDENCE);
+    }
+
+    /**
+     * Returns at most {@code n} items for the input basket, best first. Items
+     * with equal scores come in a fixed, but unspecified, order.
+     */
+    public List<Recommendation<I>> recommend(Set<I> basket,
+                                             int n,
+                                             RuleRanking ranking) {
+        Objects.requireNonNull(basket, "The basket is null.");
+        Objects.requireNonNull(ranking, "The ranking is null.");
+
+        if (n < 0) {
+            throw new IllegalArgumentException(
+                    "The number of recommendations is negative: " + n);
+        }
+
+        Index<I> current = index.get();
+
+        if (ranking == RuleRanking.LIFT && current.lifts == null) {
+            throw new IllegalStateException(
+                    "The rules were indexed without frequent itemset data, " +
+                    "so there is no lift to rank by.");
+        }
+
+        return current.recommend(basket,
+                                 n,
+                                 ranking == RuleRanking.LIFT ?
+                                         current.lifts :
+                                         current.confidences,
+                                 scratch.get());
+    }
+
+    /**
+     * The per-thread working memory of queries, reused so that a query only
+     * allocates its result.
+     */
+    private static final class Scratch {
+
+        int[] basket = new int[16];
+
+        // Per item id: the best score so far, and the number of the query
+        // that score belongs to.
+        double[] scores = new double[0];
+        int[] stamps = new int[0];
+        int stamp;
+
+        // The items scored by the current query.
+        int[] scoredItems = new int[16];
+        int scoredItemCount;
+
+        void prepare(int basketSize, int items) {
+            if (basket.length < basketSize) {
+                basket = new int[Math.max(basketSize, 2 * basket.length)];
+            }
+
+            if (stamps.length < items) {
+                scores = new double[items];
+                stamps = new int[items];
+                stamp = 0;
+            }
+
+            if (++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+
+            scoredItemCount = 0;
+        }
+
+        void offer(int item, double score) {
+            if (stamps[item] != stamp) {
+                stamps[item] = stamp;
+                scores[item] = score;
+
+                if (scoredItemCount == scoredItems.length) {
+                    scoredItems = Arrays.copyOf(scoredItems,
+                                                2 * scoredItemCount);
+                }
+
+                scoredItems[scoredItemCount++] = item;
+            } else if (score > scores[item]) {
+                scores[item] = score;
+            }
+        }
+    }
+
+    /**
+     * An immutable index over one set of rules.
+     */
+    private static final class Index<I> {
+
+        private final ItemDictionary<I> dictionary = new ItemDictionary<>();
+
+        // The rules indexed by item 'i' are ruleOrder[bucketStarts[i],
+        // bucketStarts[i + 1]).
+        private final int[] bucketStarts;
+        private final int[] ruleOrder;
+
+        // The antecedent of rule 'r' is antecedentItems[antecedentStarts[r],
+        // antecedentStarts[r + 1]), sorted; likewise for the consequent.
+        private final int[] antecedentStarts;
+        private final int[] antecedentItems;
+        private final int[] consequentStarts;
+        private final int[] consequentItems;
+
+        private final double[] confidences;
+        private final double[] lifts;
+
+        Index(List<AssociationRule<I>> ruleList,
+              FrequentItemsetData<I> data) {
+            int rules = ruleList.size();
+
+            // Number the items by ascending antecedent frequency, so that the
+            // smallest id of an antecedent is its rarest item, which has the
+            // shortest bucket.
+            Map<I, int[]> antecedentCountMap = new HashMap<>();
+            List<I> itemList = new ArrayList<>();
+
+            for (AssociationRule<I> rule : ruleList) {
+                for (I item : rule.getAntecedent()) {
+                    count(item, 1, antecedentCountMap, itemList);
+                }
+
+                for (I item : rule.getConsequent()) {
+                    count(item, 0, antecedentCountMap, itemList);
+                }
+            }
+
+            itemList.sort((item1, item2) ->
+                    Integer.compare(antecedentCountMap.get(item1)[0],
+                                    antecedentCountMap.get(item2)[0]));
+
+            for (I item : itemList) {
+                dictionary.intern(item);
+            }
+
+            this.antecedentStarts = new int[rules + 1];
+            this.consequentStarts = new int[rules + 1];
+            this.confidences = new double[rules];
+            this.lifts = data == null ? null : new double[rules];
+            List<int[]> antecedentList = new ArrayList<>(rules);
+            List<int[]> consequentList = new ArrayList<>(rules);
+            this.bucketStarts = new int[dictionary.size() + 1];
+
+            for (int r = 0; r < rules; ++r) {
+                AssociationRule<I> rule = ruleList.get(r);
+                int[] antecedent = dictionary.encode(rule.getAntecedent());
+                int[] consequent = dictionary.encode(rule.getConsequent());
+                antecedentList.add(antecedent);
+                consequentList.add(consequent);
+                antecedentStarts[r + 1] = antecedentStarts[r]
+                                        + antecedent.length;
+                consequentStarts[r + 1] = consequentStarts[r]
+                                        + consequent.length;
+                confidences[r] = rule.getConfidence();
+
+                if (lifts != null) {
+                    int supportCount = data.getSupportStore()
+                                           .getSupportCount(
+                                                   rule.getConsequent());
+                    lifts[r] = supportCount <= 0 ?
+                               Double.NaN :
+                               rule.getConfidence()
+                               * data.getTransactionNumber()
+                               / supportCount;
+                }
+
+                if (antecedent.length > 0) {
+                    ++bucketStarts[antecedent[0] + 1];
+                }
+            }
+
+            this.antecedentItems = flatten(antecedentList,
+                                           antecedentStarts[rules]);
+            this.consequentItems = flatten(consequentList,
+                                           consequentStarts[rules]);
+
+            for (int i = 0; i < dictionary.size(); ++i) {
+                bucketStarts[i + 1] += bucketStarts[i];
+            }
+
+            this.ruleOrder = new int[bucketStarts[dictionary.size()]];
+            int[] bucketEnds = Arrays.copyOf(bucketStarts, dictionary.size());
+
+            for (int r = 0; r < rules; ++r) {
+                int[] antecedent = antecedentList.get(r);
+
+                if (antecedent.length > 0) {
+                    ruleOrder[bucketEnds[antecedent[0]]++] = r;
+                }
+            }
+        }
+
+        List<Recommendation<I>> recommend(Set<I> basket,
+                                          int n,
+                                          double[] scores,
+                                          Scratch scratch) {
+            scratch.prepare(basket.size(), dictionary.size());
+            int[] basketItems = scratch.basket;
+            int basketSize = 0;
+
+            for (I item : basket) {
+                int id = dictionary.getId(item);
+
+                if (id >= 0) {
+                    basketItems[basketSize++] = id;
+                }
+            }
+
+            Arrays.sort(basketItems, 0, basketSize);
+
+            for (int i = 0; i < basketSize; ++i) {
+                int bucket = basketItems[i];
+
+                for (int j = bucketStarts[bucket];
+                         j < bucketStarts[bucket + 1];
+                         ++j) {
+                    int rule = ruleOrder[j];
+
+                    if (Double.isNaN(scores[rule])
+                            || !antecedentInBasket(rule,
+                                                   basketItems,
+                                                   basketSize)) {
+                        continue;
+                    }
+
+                    for (int k = consequentStarts[rule];
+                             k < consequentStarts[rule + 1];
+                             ++k) {
+                        int item = consequentItems[k];
+
+                        if (Arrays.binarySearch(basketItems,
+                                                0,
+                                                basketSize,
+                                                item) < 0) {
+                            scratch.offer(item, scores[rule]);
+                        }
+                    }
+                }
+            }
+
+            return topItems(n, scratch);
+        }
+
+        /**
+         * Tells whether the antecedent of the rule is a subset of the basket,
+         * by merging the two sorted id arrays.
+         */
+        private boolean antecedentInBasket(int rule,
+                                           int[] basketItems,
+                                           int basketSize) {
+            int b = 0;
+
+            for (int a = antecedentStarts[rule];
+                     a < antecedentStarts[rule + 1];
+                     ++a) {
+                int item = antecedentItems[a];
+
+                while (b < basketSize && basketItems[b] < item) {
+                    ++b;
+                }
+
+                if (b == basketSize || basketItems[b] != item) {
+                    return false;
+                }
+
+                ++b;
+            }
+
+            return true;
+        }
+
+        /**
+         * Picks the best {@code n} scored items by insertion into a sorted
+         * prefix of the scored item array.
+         */
+        private List<Recommendation<I>> topItems(int n, Scratch scratch) {
+            int[] items = scratch.scoredItems;
+            double[] scores = scratch.scores;
+            int top = 0;
+
+            for (int i = 0; i < scratch.scoredItemCount; ++i) {
+                int item = items[i];
+                int position = top < n ? top++ : n;
+
+                while (position > 0 && better(item,
+                                              items[position - 1],
+                                              scores)) {
+                    if (position < n) {
+                        items[position] = items[position - 1];
+                    }
+
+                    --position;
+                }
+
+                if (position < n) {
+                    items[position] = item;
+                }
+            }
+
+            List<Recommendation<I>> ret = new ArrayList<>(top);
+
+            for (int i = 0; i < top; ++i) {
+                ret.add(new Recommendation<>(dictionary.getItem(items[i]),
+                                             scores[items[i]]));
+            }
+
+            return ret;
+        }
+
+        private static boolean better(int item1, int item2, double[] scores) {
+            int cmp = Double.compare(scores[item1], scores[item2]);
+            return cmp > 0 || (cmp == 0 && item1 < item2);
+        }
+
+        private static <I> void count(I item,
+                                      int increment,
+                                      Map<I, int[]> countMap,
+                                      List<I> itemList) {
+            int[] counter = countMap.get(item);
+
+            if (counter == null) {
+                counter = new int[1];
+                countMap.put(item, counter);
+                itemList.add(item);
+            }
+
+            counter[0] += increment;
+        }
+
+        private static int[] flatten(List<int[]> arrayList, int length) {
+            int[] ret = new int[length];
+            int offset = 0;
+
+            for (int[] array : arrayList) {
+                System.arraycopy(array, 0, ret, offset, array.length);
+                offset += array.length;
+            }
+
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package apriori;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Mines a random sample of the transactions, and verifies the result on all
+ * of them, the way Toivonen's algorithm does. The sample is mined at a
+ * lowered minimum support, so that an itemset frequent in the whole data set
+ * is missed from the sample result with a small probability only. A single
+ * pass over all transactions then counts the sample result together with its
+ * negative border: the itemsets outside of it whose subsets are all in it.
+ *
+ * <p>If no itemset of the border turns out to be frequent, the frequent
+ * itemsets of that pass are provably all of them. Otherwise, the itemsets the
+ * sample missed are searched the Apriori way, from the smallest size that
+ * missed some, counting only the candidates the first pass did not; this 
+ * takes one more pass per such size. With these passes disabled, the result
+ * of the first pass is returned as it is, marked as incomplete; its support
+ * counts are exact either way.
+ *
+ * <p>The supports of the single items are known from encoding the data set,
+ * so only the larger itemsets are sampled.
+ *
+ * @param <I> the actual item type.
+ */
+class SamplingFrequentItemsetGenerator<I>
+        extends AbstractFrequentItemsetGenerator<I> {
+
+    private final FrequentItemsetGenerator<I> sampleGenerator;
+    private int sampleSize = 50_000;
+    private double missProbability = 0.05;
+    private boolean secondPass = true;
+    private long seed = 1L;
+
+    /**
+     * Mines the sample with Apriori.
+     */
+    SamplingFrequentItemsetGenerator() {
+        this(new AprioriFrequentItemsetGenerator<>());
+    }
+
+    /**
+     * Mines the sample with the input generator.
+     *
+     * @param sampleGenerator the engine mining the sample; it must return all
+     *                        frequent itemsets of the sample.
+     */
+    SamplingFrequentItemsetGenerator(
+            FrequentItemsetGenerator<I> sampleGenerator) {
+        this.sampleGenerator = Objects.requireNonNull(
+                sampleGenerator,
+                "The sample generator is null.");
+    }
+
+    /**
+     * Sets the number of transactions in the sample. A data set that is not
+     * larger than the sample is mined as a whole. The default is 50,000.
+     */
+    public void setSampleSize(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException(
+                    "The sample size is too small: " + sampleSize + ", " +
+                    "should be at least 1");
+        }
+
+        this.sampleSize = sampleSize;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Sets the probability, per frequent itemset, that the sample misses it.
+     * The sample is mined at the minimum support lowered by
+     * {@code sqrt(ln(1 / missProbability) / (2 * sampleSize))}, which bounds
+     * that probability by Hoeffding's inequality. A smaller probability makes
+     * a second pass rarer, but mines the sample at a lower support. The
+     * default is 0.05.
+     */
+    public void setMissProbability(double missProbability) {
+        if (!(missProbability > 0.0 && missProbability < 1.0)) {
+            throw new IllegalArgumentException(
+                    "The miss probability is out of range: " +
+                    missProbability + ", should be in (0, 1)");
+        }
+
+        this.missProbability = missProbability;
+    }
+
+    public double getMissProbability() {
+        return missProbability;
+    }
+
+    /**
+     * Sets whether the frequent itemsets the sample missed are searched by
+     * further passes over all transactions. If disabled, a result that is not
+     * provably complete is returned as incomplete instead. Enabled by
+     * default.
+     */
+    public void setSecondPass(boolean secondPass) {
+        this.secondPass = secondPass;
+    }
+
+    public boolean isSecondPass() {
+        return secondPass;
+    }
+
+    /**
+     * Sets the seed the sample is drawn with. The default is 1.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the minimum support the sample is mined at.
+     */
+    double getLoweredSupport(double minimumSupport) {
+        double lowering = Math.sqrt(Math.log(1.0 / missProbability)
+                                    / (2.0 * sampleSize));
+        return Math.max(0.0, minimumSupport - lowering);
+    }
+
+    @Override
+    FrequentItemsetData<I> generate(TransactionDatabase<I> database,
+                                    double minimumSupport) {
+        int transactions = database.getTransactionNumber();
+        FrequentItemsetCollector<I> collector = newCollector(database);
+
+        // The supports of the single items are exact already.
+        int frequentItems =
+                countFrequentItems(database, collector, minimumSupport);
+        List<int[]> frequentItemList = new ArrayList<>(frequentItems);
+
+        for (int item = 0; item < frequentItems; ++item) {
+            int[] itemset = { item };
+            collector.addFrequentItemset(itemset,
+                                         database.getItemSupportCount(item));
+            frequentItemList.add(itemset);
+        }
+
+        // The first pass counts the candidates generated from the sample
+        // result, which are that result and its negative border.
+        List<List<int[]>> sampleLevelList =
+                mineSample(database, frequentItemList, minimumSupport);
+        List<List<int[]>> candidateLevelList = new ArrayList<>();
+
+        for (int k = 2;
+                k <= getMaximumItemsetLength()
+                && !sampleLevelList.get(k - 2).isEmpty();
+                ++k) {
+            candidateLevelList.add(CandidateGenerator.generateCandidates(
+                    sampleLevelList.get(k - 2)));
+        }
+
+        List<List<int[]>> frequentLevelList =
+                countLevels(database,
+                            candidateLevelList,
+                            collector,
+                            minimumSupport);
+        frequentLevelList.add(0, frequentItemList);
+
+        // A frequent itemset has all of its subsets frequent, so it is among
+        // the candidates generated from the frequent itemsets one item 
+        // smaller. If those were all counted, nothing was missed. Otherwise, 
+        // the missing ones are counted level by level, the Apriori way.
+        for (int k = 2;
+                k <= getMaximumItemsetLength() 
+                && frequentLevelList.get(k - 2).size() > 1;
+                ++k) {
+            List<int[]> countedList = k - 2 < candidateLevelList.size() ?
+                                      candidateLevelList.get(k - 2) :
+                                      Collections.emptyList();
+            List<int[]> missingList = new ArrayList<>();
+
+            for (int[] candidate : CandidateGenerator.generateCandidates(
+                    frequentLevelList.get(k - 2))) {
+                if (Collections.binarySearch(
+                        countedList,
+                        candidate,
+                        CandidateGenerator.ITEMSET_COMPARATOR) < 0) {
+                    missingList.add(candidate);
+                }
+            }
+
+            if (frequentLevelList.size() < k) {
+                frequentLevelList.add(new ArrayList<>());
+            }
+
+            if (missingList.isEmpty()) {
+                continue;
+            }
+
+            if (!secondPass) {
+                // The itemsets found so far still hold all subsets of each
+                // of them, so they make a consistent partial result.
+                collector.setCompleteLevels(k - 1);
+                break;
+            }
+
+            List<int[]> level = frequentLevelList.get(k - 1);
+            level.addAll(countLevels(database,
+                                     Collections.singletonList(missingList),
+                                     collector,
+                                     minimumSupport).get(0));
+            level.sort(CandidateGenerator.ITEMSET_COMPARATOR);
+        }
+
+        return collector.toFrequentItemsetData(minimumSupport, transactions);
+    }
+
+    /**
+     * Mines a sample of the database at the lowered minimum support, and
+     * returns the resulting itemsets by size, each size in lexicographic
+     * order, starting with the frequent items of the whole database. Only
+     * the itemsets whose subsets are all in the result are kept, so that the
+     * candidates generated from it are exactly the result and its negative
+     * border.
+     */
+    private List<List<int[]>> mineSample(TransactionDatabase<I> database,
+                                         List<int[]> frequentItemList,
+                                         double minimumSupport) {
+        List<List<int[]>> ret = new ArrayList<>();
+        ret.add(frequentItemList);
+        int[][] sample = drawSample(database);
+
+        ItemDictionary<I> dictionary = database.getDictionary();
+        TransactionSource<I> sampleSource = new TransactionSource<I>() {
+
+            @Override
+            public void scan(TransactionConsumer consumer) {
+                for (int[] transaction : sample) {
+                    consumer.accept(transaction, transaction.length);
+                }
+            }
+
+            @Override
+            public ItemDictionary<I> getDictionary() {
+                return dictionary;
+            }
+        };
+
+        FrequentItemsetData<I> sampleData;
+
+        try {
+            // A sample of the whole database needs no lowering.
+            sampleData = sampleGenerator.generate(
+                    sampleSource,
+                    sample.length < database.getTransactionNumber() ?
+                    getLoweredSupport(minimumSupport) :
+                    minimumSupport);
+        } catch (IOException ex) {
+            // The sample is in memory; reading it never fails.
+            throw new IllegalStateException(ex);
+        }
+
+        for (Set<I> itemset : sampleData.getFrequentItemsetList()) {
+            if (itemset.size() < 2
+                    || itemset.size() > getMaximumItemsetLength()) {
+                continue;
+            }
+
+            while (ret.size() < itemset.size()) {
+                ret.add(new ArrayList<>());
+            }
+
+            ret.get(itemset.size() - 1).add(dictionary.encode(itemset));
+        }
+
+        for (int k = 2; k <= ret.size(); ++k) {
+            List<int[]> subsetList = ret.get(k - 2);
+            List<int[]> level = ret.get(k - 1);
+            level.sort(CandidateGenerator.ITEMSET_COMPARATOR);
+            level.removeIf(itemset -> !allSubsetsIn(itemset, subsetList));
+        }
+
+        // The candidates of the next size are the border of the largest
+        // itemsets.
+        ret.add(new ArrayList<>());
+        return ret;
+    }
+
+    /**
+     * Draws the sample by reservoir sampling, a transaction of weight 
+     * {@code w} standing for {@code w} alike ones. A database that is not
+     * larger than the sample is its own sample.
+     */
+    private int[][] drawSample(TransactionDatabase<I> database) {
+        int[][] transactions = database.getTransactions();
+        int[] weights = database.getWeights();
+
+        if (database.getTransactionNumber() <= sampleSize) {
+            if (transactions.length == database.getTransactionNumber()) {
+                return transactions;
+            }
+
+            int[][] ret = new int[database.getTransactionNumber()][];
+            int index = 0;
+
+            for (int t = 0; t < transactions.length; ++t) {
+                for (int w = 0; w < weights[t]; ++w) {
+                    ret[index++] = transactions[t];
+                }
+            }
+
+            return ret;
+        }
+
+        Random random = new Random(seed);
+        int[][] ret = new int[sampleSize][];
+        int seen = 0;
+
+        for (int t = 0; t < transactions.length; ++t) {
+            for (int w = 0; w < weights[t]; ++w, ++seen) {
+                int j = seen < sampleSize ? seen : random.nextInt(seen + 1);
+
+                if (j < sampleSize) {
+                    ret[j] = transactions[t];
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Counts the candidates of all levels in one pass over the database, and
+     * reports them to the collector.
+     *
+     * @param candidateLevelList the candidates of each size, each size in
+     *                           lexicographic order.
+     * @return the frequent candidates of each size, in the same order.
+     */
+    private List<List<int[]>> countLevels(
+            TransactionDatabase<I> database,
+            List<List<int[]>> candidateLevelList,
+            FrequentItemsetCollector<I> collector,
+            double minimumSupport) {
+        List<CandidateTrie> candidateTrieList = new ArrayList<>();
+
+        for (List<int[]> candidateList : candidateLevelList) {
+            candidateTrieList.add(new CandidateTrie(candidateList));
+        }
+
+        int[][] transactions = database.getTransactions();
+        int[] weights = database.getWeights();
+
+        for (int t = 0; t < transactions.length; ++t) {
+            for (CandidateTrie candidateTrie : candidateTrieList) {
+                candidateTrie.count(transactions[t],
+                                    0,
+                                    transactions[t].length,
+                                    weights[t]);
+            }
+        }
+
+        List<List<int[]>> ret = new ArrayList<>();
+
+        for (int i = 0; i < candidateLevelList.size(); ++i) {
+            List<int[]> candidateList = candidateLevelList.get(i);
+            CandidateTrie candidateTrie = candidateTrieList.get(i);
+            List<int[]> frequentItemsetList = new ArrayList<>();
+
+            for (int j = 0; j < candidateList.size(); ++j) {
+                int[] itemset = candidateList.get(j);
+                int supportCount = candidateTrie.getSupportCount(j);
+
+                if (isFrequent(supportCount,
+                               database.getTransactionNumber(),
+                               minimumSupport)) {
+                    collector.addFrequentItemset(itemset, supportCount);
+                    frequentItemsetList.add(itemset);
+                } else {
+                    collector.addSupportCount(itemset, supportCount);
+                }
+            }
+
+            ret.add(frequentItemsetList);
+        }
+
+        return ret;
+    }
+
+    private static boolean allSubsetsIn(int[] itemset,
+                                        List<int[]> subsetList) {
+        for (int skip = 0; skip < itemset.length; ++skip) {
+            if (CandidateGenerator.indexOfSubset(subsetList, itemset, skip)
+                    < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,551 @@
+package apriori;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mines the frequent itemsets of the latest transactions of an unbounded
+ * feed. The window holds at most a given number of transactions, and,
+ * optionally, only those of the last given milliseconds. Each transaction
+ * that enters the window increments the support count of every one of its
+ * subsets up to the maximum itemset length, and decrements them again when
+ * it leaves, so a snapshot of the frequent itemsets of the window can be
+ * taken at any time, without a scan.
+ *
+ * <p>The cost of a transaction is the number of its subsets up to the
+ * maximum itemset length {@code L}, that is, the sum of {@code C(n, k)} for
+ * {@code k} from 1 to {@code L}, for a transaction of {@code n} items. It
+ * grows as {@code n^L}, which is small for basket data and a short maximum
+ * length, but not for long transactions: with {@code L} = 4, 30 items make
+ * 31,930 subsets and 100 items make over four million. A transaction with
+ * more subsets than {@link #setMaximumSubsetNumber(int)} allows is rejected.
+ * The memory is bounded by the window: the transactions in it, one counter
+ * per distinct subset of them, and the ids of the items in it; an item that
+ * leaves the window gives its id back.
+ *
+ * <p>The miner may be fed by one thread while others take snapshots. A
+ * read/write lock lets the snapshots run at the same time as each other,
+ * but not with a slide: a snapshot waits for the transaction being added,
+ * and the feed waits while a snapshot scans the counters, which takes time
+ * proportional to their number.
+ *
+ * @param <I> the actual item type.
+ */
+class SlidingWindowMiner<I> {
+
+    private final int maximumItemsetLength;
+    private int windowSize = 10_000;
+    private long windowMillis = Long.MAX_VALUE;
+    private int maximumSubsetNumber = 1_000_000;
+
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    // The ids of the items in the window. The id of an item whose count
+    // drops to zero is freed, and reused by the next new item, so that the
+    // ids stay as many as the distinct items in the window.
+    private final Map<I, Integer> idMap = new HashMap<>();
+    private final List<I> itemList = new ArrayList<>();
+    private int[] itemCounts = new int[16];
+    private int[] freeIds = new int[16];
+    private int freeIdNumber;
+
+    private final ArrayDeque<WindowEntry> window = new ArrayDeque<>();
+
+    // The support counts of all subsets of the transactions in the window,
+    // up to the maximum itemset length. The counters are mutable, so that
+    // counting does not box a new Integer per subset.
+    private final Map<ItemsetKey, int[]> counterMap = new HashMap<>();
+
+    // The key looked up while counting, and the subset it points to.
+    private final ItemsetKey probe = new ItemsetKey(null, 0);
+    private final int[] subset;
+
+    /**
+     * @param maximumItemsetLength the size of the largest itemsets counted.
+     */
+    SlidingWindowMiner(int maximumItemsetLength) {
+        if (maximumItemsetLength < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum itemset length is too small: " +
+                    maximumItemsetLength + ", should be at least 1");
+        }
+
+        this.maximumItemsetLength = maximumItemsetLength;
+        this.subset = new int[maximumItemsetLength];
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    /**
+     * Sets the number of transactions the window holds at most. The default
+     * is 10,000. Shrinking the window evicts the oldest transactions right
+     * away.
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException(
+                    "The window size is too small: " + windowSize + ", " +
+                    "should be at least 1");
+        }
+
+        writeLock.lock();
+
+        try {
+            this.windowSize = windowSize;
+
+            while (window.size() > windowSize) {
+                removeOldest();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int getWindowSize() {
+        readLock.lock();
+
+        try {
+            return windowSize;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the age, in milliseconds, past which a transaction leaves the
+     * window. Transactions age by the timestamps of the later ones, or by
+     * {@link #advanceTime(long)}. Unlimited by default.
+     */
+    public void setWindowMillis(long windowMillis) {
+        if (windowMillis < 1) {
+            throw new IllegalArgumentException(
+                    "The window length is too small: " + windowMillis + ", " +
+                    "should be at least 1");
+        }
+
+        writeLock.lock();
+
+        try {
+            this.windowMillis = windowMillis;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long getWindowMillis() {
+        readLock.lock();
+
+        try {
+            return windowMillis;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of subsets, up to the maximum itemset length, that a
+     * transaction may have. The default is 1,000,000. Adding a transaction
+     * with more subsets throws, as counting them would take too long.
+     */
+    public void setMaximumSubsetNumber(int maximumSubsetNumber) {
+        if (maximumSubsetNumber < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum subset number is too small: " +
+                    maximumSubsetNumber + ", should be at least 1");
+        }
+
+        writeLock.lock();
+
+        try {
+            this.maximumSubsetNumber = maximumSubsetNumber;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int getMaximumSubsetNumber() {
+        readLock.lock();
+
+        try {
+            return maximumSubsetNumber;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getMaximumItemsetLength() {
+        return maximumItemsetLength;
+    }
+
+    /**
+     * Returns the number of transactions in the window.
+     */
+    public int getTransactionNumber() {
+        readLock.lock();
+
+        try {
+            return window.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a transaction stamped with the current time.
+     */
+    public void add(Set<I> transaction) {
+        add(transaction, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds a transaction with the input timestamp, in milliseconds, and
+     * evicts the transactions that fell out of the window. Timestamps are
+     * expected not to decrease; a transaction stamped earlier than the newest
+     * one is kept until the ones before it leave.
+     *
+     * @throws IllegalArgumentException if the transaction has more subsets
+     *                                  than the maximum subset number.
+     */
+    public void add(Set<I> transaction, long timestampMillis) {
+        Objects.requireNonNull(transaction, "The transaction is null.");
+        writeLock.lock();
+
+        try {
+            if (subsetNumber(transaction.size()) > maximumSubsetNumber) {
+                throw new IllegalArgumentException(
+                        "The transaction has too many subsets: " +
+                        transaction.size() + " items make more than " +
+                        maximumSubsetNumber);
+            }
+
+            int[] items = new int[transaction.size()];
+            int index = 0;
+
+            for (I item : transaction) {
+                items[index++] = intern(item);
+            }
+
+            Arrays.sort(items);
+            window.addLast(new WindowEntry(items, timestampMillis));
+            count(items, 0, 0, 1);
+            evict(timestampMillis);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds every transaction of the input iterator, in order, stamped with
+     * the time each one is taken. The iterator may block while waiting for
+     * the next transaction, as one over a queue or a file tail does.
+     */
+    public void addAll(Iterator<? extends Set<I>> transactions) {
+        while (transactions.hasNext()) {
+            add(transactions.next());
+        }
+    }
+
+    /**
+     * Evicts the transactions that are too old at the input time, for a feed
+     * that has gone quiet.
+     */
+    public void advanceTime(long nowMillis) {
+        writeLock.lock();
+
+        try {
+            evict(nowMillis);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the frequent itemsets of the window, up to the maximum itemset
+     * length, or null if the window is empty. The snapshot does not change
+     * as the window slides on.
+     */
+    public FrequentItemsetData<I> getFrequentItemsets(double minimumSupport) {
+        AbstractFrequentItemsetGenerator.checkSupport(minimumSupport);
+        readLock.lock();
+
+        try {
+            return snapshot(minimumSupport);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the association rules of the frequent itemsets of the window,
+     * or an empty list if the window is empty.
+     */
+    public List<AssociationRule<I>>
+        getAssociationRules(double minimumSupport, double minimumConfidence) {
+        FrequentItemsetData<I> data = getFrequentItemsets(minimumSupport);
+        return data == null ?
+               new ArrayList<>() :
+               new AssociationRuleGenerator<I>()
+                       .mineAssociationRules(data, minimumConfidence);
+    }
+
+    /**
+     * Reads transactions from the input reader, one per line, with the items
+     * separated by spaces or tabs, as from the standard input or a file tail.
+     * Lines are split as {@link MappedTransactionFile} splits them, so an
+     * empty line is an empty transaction.
+     */
+    static Iterator<Set<String>> readLines(BufferedReader reader) {
+        return new Iterator<Set<String>>() {
+
+            private Set<String> next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    String line;
+
+                    if (next == null && (line = reader.readLine()) != null) {
+                        next = MappedTransactionFile.tokenize(line);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+
+                return next != null;
+            }
+
+            @Override
+            public Set<String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Set<String> ret = next;
+                next = null;
+                return ret;
+            }
+        };
+    }
+
+    private FrequentItemsetData<I> snapshot(double minimumSupport) {
+        if (window.isEmpty()) {
+            return null;
+        }
+
+        // The snapshot gets its own dictionary, as the ids here are reused.
+        ItemDictionary<I> snapshotDictionary = new ItemDictionary<>();
+        FrequentItemsetCollector<I> collector =
+                new FrequentItemsetCollector<>(snapshotDictionary);
+
+        for (Map.Entry<ItemsetKey, int[]> entry : counterMap.entrySet()) {
+            int supportCount = entry.getValue()[0];
+
+            if (AbstractFrequentItemsetGenerator.isFrequent(supportCount,
+                                                            window.size(),
+                                                            minimumSupport)) {
+                int[] itemset = entry.getKey().items.clone();
+
+                for (int i = 0; i < itemset.length; ++i) {
+                    itemset[i] = snapshotDictionary.intern(
+                            itemList.get(itemset[i]));
+                }
+
+                collector.addFrequentItemset(itemset, supportCount);
+            }
+        }
+
+        return collector.toFrequentItemsetData(minimumSupport, window.size());
+    }
+
+    private void evict(long nowMillis) {
+        while (window.size() > windowSize
+                || (!window.isEmpty()
+                    && windowMillis != Long.MAX_VALUE
+                    && nowMillis - window.peekFirst().timestampMillis
+                       >= windowMillis)) {
+            removeOldest();
+        }
+    }
+
+    private void removeOldest() {
+        int[] items = window.pollFirst().items;
+        count(items, 0, 0, -1);
+
+        for (int id : items) {
+            if (--itemCounts[id] == 0) {
+                idMap.remove(itemList.get(id));
+                itemList.set(id, null);
+
+                if (freeIdNumber == freeIds.length) {
+                    freeIds = Arrays.copyOf(freeIds, 2 * freeIdNumber);
+                }
+
+                freeIds[freeIdNumber++] = id;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the input item, and counts the item once more in the
+     * window. A new item takes a freed id if there is one.
+     */
+    private int intern(I item) {
+        Integer id = idMap.get(item);
+
+        if (id == null) {
+            if (freeIdNumber > 0) {
+                id = freeIds[--freeIdNumber];
+                itemList.set(id, item);
+            } else {
+                id = itemList.size();
+                itemList.add(item);
+
+                if (id == itemCounts.length) {
+                    itemCounts = Arrays.copyOf(itemCounts, 2 * id);
+                }
+            }
+
+            idMap.put(item, id);
+        }
+
+        ++itemCounts[id];
+        return id;
+    }
+
+    /**
+     * Returns the number of subsets, up to the maximum itemset length, of a
+     * transaction of the input size, or a number above the maximum subset
+     * number once that is exceeded.
+     */
+    private long subsetNumber(int items) {
+        long ret = 0L;
+        long binomial = 1L;
+
+        for (int k = 1;
+                k <= Math.min(items, maximumItemsetLength)
+                && ret <= maximumSubsetNumber;
+                ++k) {
+            // C(n, k) from C(n, k - 1). Both stay below 2^31 until the loop
+            // stops, so the product does not overflow.
+            binomial = binomial * (items - k + 1) / k;
+            ret += binomial;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Adds {@code delta} to the support count of every subset of the input
+     * transaction that extends {@code subset[0, length)} by items at or after
+     * {@code start}, up to the maximum itemset length.
+     */
+    private void count(int[] transaction, int start, int length, int delta) {
+        for (int i = start; i < transaction.length; ++i) {
+            subset[length] = transaction[i];
+            probe.set(subset, length + 1);
+            int[] counter = counterMap.get(probe);
+
+            if (counter == null) {
+                // Only an entering transaction can meet a new subset.
+                counter = new int[1];
+                counterMap.put(new ItemsetKey(
+                                       Arrays.copyOf(subset, length + 1),
+                                       length + 1),
+                               counter);
+            }
+
+            counter[0] += delta;
+
+            if (counter[0] == 0) {
+                counterMap.remove(probe);
+            }
+
+            if (length + 1 < maximumItemsetLength) {
+                count(transaction, i + 1, length + 1, delta);
+            }
+        }
+    }
+
+    private static final class WindowEntry {
+
+        final int[] items;
+        final long timestampMillis;
+
+        WindowEntry(int[] items, long timestampMillis) {
+            this.items = items;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+
+    /**
+     * An itemset as a map key: the first {@code length} ids of an array. The
+     * keys stored in the map own their arrays; the probe points into the
+     * subset buffer.
+     */
+    private static final class ItemsetKey {
+
+        int[] items;
+        int length;
+        int hash;
+
+        ItemsetKey(int[] items, int length) {
+            set(items, length);
+        }
+
+        void set(int[] items, int length) {
+            this.items = items;
+            this.length = length;
+
+            // The ids are small and dense, so a polynomial hash would send
+            // millions of subsets to far fewer values; mix the bits instead.
+            long h = length;
+
+            for (int i = 0; i < length; ++i) {
+                h = (h ^ items[i]) * 0x9E3779B97F4A7C15L;
+            }
+
+            this.hash = (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ItemsetKey)) {
+                return false;
+            }
+
+            ItemsetKey other = (ItemsetKey) o;
+
+            if (other.length != length || other.hash != hash) {
+                return false;
+            }
+
+            for (int i = 0; i < length; ++i) {
+                if (other.items[i] != items[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package apriori;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Writes frequent itemsets and association rules as text, one per line:
+ *
+ * <pre>
+ * &lt;------- Frequent itemsets -------&gt;
+ *  1: [bread, milk], support: 0.3
+ *
+ * &lt;------- Association rules -------&gt;
+ *  1: [bread] -&gt; [milk]: 0.75
+ * </pre>
+ *
+ * The lines are those the console version has always written, that is,
+ * {@code "%2d: %9s, support: %1.1f"} for an itemset, and
+ * {@code "%2d: %s"} with {@link AssociationRule#toString()} for a rule. An
+ * itemset line is built into a reused buffer, instead of formatting a new
+ * string per line. The output should be buffered, as every line takes
+ * several writes.
+ *
+ * <p>Itemsets can be streamed from an engine as a
+ * {@link FrequentItemsetConsumer}, or written from a mining result.
+ *
+ * @param <I> the actual item type.
+ */
+final class TextResultWriter<I>
+        implements FrequentItemsetConsumer<I>, Closeable {
+
+    private static final String ITEMSET_HEADER =
+            "<------- Frequent itemsets ------->";
+    private static final String RULE_HEADER =
+            "<------- Association rules ------->";
+
+    // The widths of the index and the itemset, padded with spaces on the
+    // left as printf does.
+    private static final int INDEX_WIDTH = 2;
+    private static final int ITEMSET_WIDTH = 9;
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder();
+    private final Formatter formatter = new Formatter(line);
+    private char[] chars = new char[64];
+    private ItemDictionary<I> dictionary;
+    private int transactionNumber;
+    private int itemsets;
+
+    TextResultWriter(Writer writer) {
+        this.writer = Objects.requireNonNull(writer, "The writer is null.");
+    }
+
+    /**
+     * Writes the header of the itemsets. The itemsets follow as they are
+     * accepted, and their supports are relative to the input number of
+     * transactions.
+     */
+    @Override
+    public void start(ItemDictionary<I> dictionary, int transactionNumber) {
+        this.dictionary = dictionary;
+        this.transactionNumber = transactionNumber;
+
+        try {
+            writeItemsetHeader();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void accept(int[] itemset, int supportCount) {
+        try {
+            startLine(++itemsets);
+            int start = line.length();
+            // Decoded as a result decodes it, so that the items come in the
+            // same order either way.
+            line.append(dictionary.decode(itemset));
+            endItemsetLine(start, (double) supportCount / transactionNumber);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the header of the itemsets, and all frequent itemsets of the
+     * input result, which may be null if there were no transactions.
+     */
+    void writeItemsets(FrequentItemsetData<I> data) throws IOException {
+        writeItemsetHeader();
+
+        if (data == null) {
+            return;
+        }
+
+        for (Set<I> itemset : data.getFrequentItemsetList()) {
+            startLine(++itemsets);
+            int start = line.length();
+            line.append(itemset);
+            endItemsetLine(start, data.getSupport(itemset));
+        }
+    }
+
+    /**
+     * Writes the header of the rules, and the rules in the input order.
+     */
+    void writeRules(List<AssociationRule<I>> ruleList) throws IOException {
+        writer.write('\n');
+        writer.write(RULE_HEADER);
+        writer.write('\n');
+        int index = 0;
+
+        for (AssociationRule<I> rule : ruleList) {
+            startLine(++index);
+            line.append(rule).append('\n');
+            writeLine();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeItemsetHeader() throws IOException {
+        writer.write(ITEMSET_HEADER);
+        writer.write('\n');
+    }
+
+    /**
+     * Starts a line in the buffer with its index, as {@code "%2d: "} does.
+     */
+    private void startLine(int index) {
+        line.setLength(0);
+        line.append(index);
+        pad(0, INDEX_WIDTH);
+        line.append(": ");
+    }
+
+    /**
+     * Ends an itemset line, whose itemset starts at the input index of the
+     * buffer, and writes it.
+     */
+    private void endItemsetLine(int start, double support)
+            throws IOException {
+        pad(start, ITEMSET_WIDTH);
+        line.append(", support: ");
+        formatter.format("%1.1f", support);
+        line.append('\n');
+        writeLine();
+    }
+
+    /**
+     * Pads the text from the input index to the end of the buffer with
+     * spaces on its left, up to the input width.
+     */
+    private void pad(int start, int width) {
+        for (int i = line.length() - start; i < width; ++i) {
+            line.insert(start, ' ');
+        }
+    }
+
+    private void writeLine() throws IOException {
+        int length = line.length();
+
+        if (length > chars.length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+
+        line.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+    }
+}
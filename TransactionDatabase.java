@@ -0,0 +1,302 @@
+package apriori;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The encoded form of a transaction list. Each item is mapped to a dense id,
+ * where the most frequent item gets id 0, the second most frequent one gets 
+ * id 1, and so on. Each transaction is stored as a sorted array of item ids,
+ * with a weight: the number of times it occurs in the data set. The weights
+ * are all 1 until identical transactions are collapsed into one.
+ *
+ * @param <I> the actual item type.
+ */
+class TransactionDatabase<I> {
+
+    private final ItemDictionary<I> dictionary;
+    private final int[][] transactions;
+    private final int[] weights;
+    private final int[] itemSupportCounts;
+    private final int transactionNumber;
+
+    private TransactionDatabase(ItemDictionary<I> dictionary,
+                                int[][] transactions,
+                                int[] itemSupportCounts) {
+        this(dictionary, 
+             transactions, 
+             ones(transactions.length), 
+             itemSupportCounts,
+             transactions.length);
+    }
+
+    private TransactionDatabase(ItemDictionary<I> dictionary,
+                                int[][] transactions,
+                                int[] weights,
+                                int[] itemSupportCounts,
+                                int transactionNumber) {
+        this.dictionary = dictionary;
+        this.transactions = transactions;
+        this.weights = weights;
+        this.itemSupportCounts = itemSupportCounts;
+        this.transactionNumber = transactionNumber;
+    }
+
+    static <I> TransactionDatabase<I> encode(List<Set<I>> transactionList) {
+        // Count the support of each item. The counters are mutable, so that 
+        // counting does not box a new Integer per occurrence.
+        Map<I, int[]> counterMap = new HashMap<>();
+        List<I> itemList = new ArrayList<>();
+
+        for (Set<I> transaction : transactionList) {
+            for (I item : transaction) {
+                int[] counter = counterMap.get(item);
+
+                if (counter == null) {
+                    counter = new int[1];
+                    counterMap.put(item, counter);
+                    itemList.add(item);
+                }
+
+                ++counter[0];
+            }
+        }
+
+        // Assign the ids by descending support. The sort is stable, so items
+        // with equal support keep the order they were first seen in.
+        itemList.sort((i1, i2) -> Integer.compare(counterMap.get(i2)[0],
+                                                  counterMap.get(i1)[0]));
+
+        ItemDictionary<I> dictionary = new ItemDictionary<>();
+        int[] itemSupportCounts = new int[itemList.size()];
+
+        for (I item : itemList) {
+            itemSupportCounts[dictionary.intern(item)] = 
+                    counterMap.get(item)[0];
+        }
+
+        int[][] transactions = new int[transactionList.size()][];
+
+        for (int i = 0; i < transactions.length; ++i) {
+            transactions[i] = dictionary.encode(transactionList.get(i));
+        }
+
+        return new TransactionDatabase<>(dictionary, 
+                                         transactions, 
+                                         itemSupportCounts);
+    }
+
+    /**
+     * Encodes the transactions of the input source in a single scan, which
+     * counts the items and keeps each transaction in the ids of the source.
+     * Those arrays are then mapped to the final ids in place.
+     */
+    static <I> TransactionDatabase<I> encode(TransactionSource<I> source) 
+            throws IOException {
+        ItemCounter counter = new ItemCounter();
+        source.scan(counter);
+
+        ItemDictionary<I> sourceDictionary = source.getDictionary();
+        int items = sourceDictionary.size();
+
+        // Sort the source ids by descending support, breaking ties by source
+        // id, by packing both into one long per item.
+        long[] keys = new long[items];
+
+        for (int id = 0; id < items; ++id) {
+            int supportCount = id < counter.supportCounts.length ? 
+                               counter.supportCounts[id] :
+                               0;
+            keys[id] = ((long) (Integer.MAX_VALUE - supportCount) << 32) | id;
+        }
+
+        Arrays.sort(keys);
+
+        ItemDictionary<I> dictionary = new ItemDictionary<>();
+        int[] itemSupportCounts = new int[items];
+        int[] idMap = new int[items];
+
+        for (long key : keys) {
+            int sourceId = (int) key;
+            int id = dictionary.intern(sourceDictionary.getItem(sourceId));
+            idMap[sourceId] = id;
+            itemSupportCounts[id] = Integer.MAX_VALUE - (int) (key >>> 32);
+        }
+
+        int[][] transactions = Arrays.copyOf(counter.transactionArray,
+                                             counter.transactions);
+
+        for (int[] transaction : transactions) {
+            for (int i = 0; i < transaction.length; ++i) {
+                transaction[i] = idMap[transaction[i]];
+            }
+
+            Arrays.sort(transaction);
+        }
+
+        return new TransactionDatabase<>(dictionary, 
+                                         transactions, 
+                                         itemSupportCounts);
+    }
+
+    /**
+     * Returns a database holding each distinct transaction once, weighted by
+     * the number of times it occurs in this one, or this database if all of
+     * its transactions are distinct. The item ids and supports stay the same.
+     */
+    TransactionDatabase<I> collapseDuplicates() {
+        int[][] distinctTransactions = transactions.clone();
+        int[] distinctWeights = weights.clone();
+        int size = collapseDuplicates(distinctTransactions, 
+                                      distinctWeights, 
+                                      transactions.length);
+
+        if (size == transactions.length) {
+            return this;
+        }
+
+        return new TransactionDatabase<>(
+                dictionary,
+                Arrays.copyOf(distinctTransactions, size),
+                Arrays.copyOf(distinctWeights, size),
+                itemSupportCounts,
+                transactionNumber);
+    }
+
+    /**
+     * Collapses the identical transactions among the first {@code size} ones
+     * of the input arrays into the first occurrence of each, adding up their
+     * weights. The distinct transactions are moved to the front of the 
+     * arrays, in the order they first occur.
+     *
+     * @param transactions the transactions, each a sorted array of ids.
+     * @param weights      the weight of each transaction.
+     * @return the number of distinct transactions.
+     */
+    static int collapseDuplicates(int[][] transactions, 
+                                  int[] weights, 
+                                  int size) {
+        Map<TransactionKey, Integer> indexMap = new HashMap<>();
+        int distinct = 0;
+
+        for (int i = 0; i < size; ++i) {
+            Integer index = 
+                    indexMap.putIfAbsent(new TransactionKey(transactions[i]),
+                                         distinct);
+
+            if (index == null) {
+                transactions[distinct] = transactions[i];
+                weights[distinct] = weights[i];
+                ++distinct;
+            } else {
+                weights[index] += weights[i];
+            }
+        }
+
+        return distinct;
+    }
+
+    ItemDictionary<I> getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the transactions. After collapsing, each of them stands for as
+     * many as its weight.
+     */
+    int[][] getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Returns the weight of each transaction, indexed like 
+     * {@link #getTransactions()}. The array is not a copy.
+     */
+    int[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Returns the number of transactions of the data set, that is, the sum
+     * of the weights.
+     */
+    int getTransactionNumber() {
+        return transactionNumber;
+    }
+
+    int getItemSupportCount(int item) {
+        return itemSupportCounts[item];
+    }
+
+    int getItemNumber() {
+        return itemSupportCounts.length;
+    }
+
+    private static int[] ones(int length) {
+        int[] ret = new int[length];
+        Arrays.fill(ret, 1);
+        return ret;
+    }
+
+    /**
+     * A transaction as a map key, compared by its ids.
+     */
+    private static final class TransactionKey {
+
+        private final int[] items;
+        private final int hash;
+
+        TransactionKey(int[] items) {
+            this.items = items;
+            this.hash = Arrays.hashCode(items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TransactionKey
+                    && Arrays.equals(items, ((TransactionKey) o).items);
+        }
+    }
+
+    private static final class ItemCounter 
+            implements TransactionSource.TransactionConsumer {
+
+        int[] supportCounts = new int[16];
+        int[][] transactionArray = new int[16][];
+        int transactions;
+
+        @Override
+        public void accept(int[] items, int length) {
+            if (transactions == transactionArray.length) {
+                transactionArray = Arrays.copyOf(transactionArray, 
+                                                 2 * transactions);
+            }
+
+            transactionArray[transactions] = Arrays.copyOf(items, length);
+
+            for (int i = 0; i < length; ++i) {
+                int item = items[i];
+
+                if (item >= supportCounts.length) {
+                    supportCounts = Arrays.copyOf(
+                            supportCounts, 
+                            Math.max(item + 1, 2 * supportCounts.length));
+                }
+
+                ++supportCounts[item];
+            }
+
+            ++transactions;
+        }
+    }
+}
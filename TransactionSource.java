@@ -0,0 +1,38 @@
+package apriori;
+
+import java.io.IOException;
+
+/**
+ * A source of transactions that can be scanned any number of times, without 
+ * holding all of them in memory. Items are handed out as ids of the 
+ * dictionary of the source, which stay the same across scans.
+ *
+ * @param <I> the actual item type.
+ */
+interface TransactionSource<I> {
+
+    /**
+     * Receives the transactions of a scan, one at a time.
+     */
+    interface TransactionConsumer {
+
+        /**
+         * Accepts the transaction made of the first {@code length} ids of
+         * {@code items}. The ids are distinct, but not necessarily sorted. The
+         * array may be reused for the next transaction, so it must not be
+         * kept.
+         */
+        void accept(int[] items, int length);
+    }
+
+    /**
+     * Feeds every transaction of this source to the input consumer, in order.
+     */
+    void scan(TransactionConsumer consumer) throws IOException;
+
+    /**
+     * Returns the dictionary the item ids of this source refer to. It is 
+     * complete once the first scan has finished.
+     */
+    ItemDictionary<I> getDictionary();
+}